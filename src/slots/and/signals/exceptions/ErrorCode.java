@@ -0,0 +1,38 @@
+package slots.and.signals.exceptions;
+
+/**
+ * The kinds of slot failure reported through the handler's error channel.
+ * @author walfordt
+ */
+public enum ErrorCode 
+{
+	/**
+	 * The slot returned null where the signal expects a value
+	 */
+	NULL_RETURN,
+	
+	/**
+	 * The slot returned a value of the wrong type
+	 */
+	INVALID_RETURN_TYPE,
+	
+	/**
+	 * The slot's method could not be accessed
+	 */
+	METHOD_ACCESS,
+	
+	/**
+	 * The slot (or a task run for it) threw an exception
+	 */
+	SLOT_THREW,
+	
+	/**
+	 * The slot ran past its time budget and was cancelled
+	 */
+	TIMEOUT,
+	
+	/**
+	 * The slot timed out too often, and was quarantined
+	 */
+	QUARANTINED
+}
@@ -0,0 +1,103 @@
+package slots.and.signals.exceptions;
+
+import slots.and.signals.structure.Slot;
+
+/**
+ * A lightweight exception describing a slot failure, passed to error handlers. It is built without a stack trace, and its message is only put together 
+ * when asked for, so failures stay cheap on the invoke path. The underlying exception (if any) is kept as the cause.
+ * @author walfordt
+ */
+public class SlotException extends RuntimeException 
+{
+	
+	private static final long serialVersionUID = -4316718216331862140L;
+
+	private final ErrorCode code;
+	
+	private final transient Slot slot;
+	
+	private final transient Object detail;
+	
+	/**
+	 * Generates a new exception
+	 * 
+	 * @param code		The kind of failure
+	 * @param slot		The failing slot (this can be null for tasks not tied to a slot)
+	 * @param cause		The underlying exception (this can be null)
+	 * @param detail	Extra detail for the message, such as the class actually returned (this can be null)
+	 */
+	public SlotException(ErrorCode code, Slot slot, Throwable cause, Object detail)
+	{
+		super(null, cause);
+		this.code = code;
+		this.slot = slot;
+		this.detail = detail;
+	}
+	
+	/**
+	 * Getter to get the kind of failure
+	 * @return
+	 */
+	public ErrorCode getCode()
+	{
+		return this.code;
+	}
+	
+	/**
+	 * Getter to get the failing slot
+	 * @return	The slot, or null if the failure is not tied to a slot
+	 */
+	public Slot getSlot()
+	{
+		return this.slot;
+	}
+	
+	/**
+	 * Getter to get the name of the signal the failing slot is attached to
+	 * @return	The signal name, or null if the failure is not tied to a slot
+	 */
+	public String getSignalName()
+	{
+		return this.slot == null ? null : this.slot.getTargetSignal();
+	}
+	
+	/**
+	 * Getter to get the extra detail of the failure
+	 * @return
+	 */
+	public Object getDetail()
+	{
+		return this.detail;
+	}
+	
+	/**
+	 * Skips filling in the stack trace, as the failure is described by its code, slot and cause
+	 */
+	@Override
+	public synchronized Throwable fillInStackTrace()
+	{
+		return this;
+	}
+	
+	@Override
+	public String getMessage()
+	{
+		String signal = getSignalName();
+		switch (this.code)
+		{
+			case NULL_RETURN:
+				return "Error: A slot on signal: " + signal + " returned null, where a value is expected";
+			case INVALID_RETURN_TYPE:
+				return "Error: A slot on signal: " + signal + " returned type: " + this.detail 
+					+ ", which does not match the expected return type: " + (this.slot == null ? null : this.slot.getReturnType());
+			case METHOD_ACCESS:
+				return "Error: This thread does not have access to the method of a slot on signal: " + signal;
+			case TIMEOUT:
+				return "Error: A slot on signal: " + signal + " ran past its budget after " + this.detail + "ns, and was cancelled";
+			case QUARANTINED:
+				return "Error: A slot on signal: " + signal + " has timed out " + this.detail + " times, and has been quarantined";
+			default:
+				return "Error: A slot on signal: " + signal + " threw: " + getCause();
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package slots.and.signals.structure;
+
+/**
+ * Interface to allow a signal's arguments to be built only when they are needed. Used by the lazy invokes, which skip the supplier entirely when no
+ * slot would be called.
+ * @author walfordt
+ */
+public interface ArgumentSupplier
+{
+	/**
+	 * Called by the signal when at least one slot would be called, this builds the arguments of the invoke.
+	 *
+	 * @return	The arguments to pass to the slots
+	 */
+	public Object[] getArguments();
+}
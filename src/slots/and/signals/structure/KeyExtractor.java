@@ -0,0 +1,17 @@
+package slots.and.signals.structure;
+
+/**
+ * Interface to allow a signal to route its invokes by key. The extracted key is looked up in the handler's index, so only the slots registered for that key
+ * (along with any unkeyed slots) are called.
+ * @author walfordt
+ */
+public interface KeyExtractor 
+{
+	/**
+	 * Called by the SASHandler on every invoke of the signal, this returns the key to route the invoke by.
+	 * 
+	 * @param varargs	The arguments passed by the signal
+	 * @return	The routing key. This should have consistent equals and hashCode methods
+	 */
+	public Object extractKey(Object[] varargs);
+}
@@ -1,9 +1,15 @@
 package slots.and.signals.structure;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import slots.and.signals.exceptions.SignalNameInUseException;
 import slots.and.signals.structure.manager.SASHandler;
+import slots.and.signals.structure.manager.support.ResultCache;
+import slots.and.signals.structure.manager.support.SignalStructure;
+import slots.and.signals.structure.manager.threading.ScheduledEmission;
 
 /**
  * This class is designed to register an intent to broadcast data for calling on a method/methods outside of the current project/thread. THe class registers with
@@ -25,6 +31,14 @@ public class Signal {
 	
 	private final boolean isVoid;
 	
+	private final KeyExtractor keyExtractor;
+	
+	private volatile long slotTimeoutNanos = 0;
+	
+	private volatile KeyExtractor partitioner = null;
+	
+	private volatile SignalStructure structure = null;
+	
 	/**
 	 * Creates a new Signal object
 	 * 
@@ -33,11 +47,26 @@ public class Signal {
 	 * @param returnParam	The expected return value type (this can be null)
 	 */
 	public Signal(String signalName, Class<?>[] varargs, Class<?> returnParam)
+	{
+		this(signalName, varargs, returnParam, null);
+	}
+	
+	/**
+	 * Creates a new keyed Signal object. Each invoke is routed by the key extracted from its arguments, so only the slots registered for that key (see
+	 * Slot.routeOnKey and Slot.routeOnFilter), along with any unkeyed slots, are called.
+	 * 
+	 * @param signalName	The name you want to attribute to the signal. Note this must be unique
+	 * @param varargs		The arguments that are being passed by this signal
+	 * @param returnParam	The expected return value type (this can be null)
+	 * @param keyExtractor	The extractor for the routing key (this can be null, in which case every slot is called)
+	 */
+	public Signal(String signalName, Class<?>[] varargs, Class<?> returnParam, KeyExtractor keyExtractor)
 	{
 		Class<?>[] params = varargs;
 		this.parameters = params;
 		this.signalName = signalName;
 		this.returnParameter = returnParam;
+		this.keyExtractor = keyExtractor;
 		if (returnParam == null)
 		{
 			isVoid = true;
@@ -47,7 +76,7 @@ public class Signal {
 			isVoid = false;
 		}
 		try {
-			SASHandler.registerSignal(this);
+			this.structure = SASHandler.registerSignal(this);
 		} catch (SignalNameInUseException e) {
 			e.printStackTrace();
 		}
@@ -74,6 +103,7 @@ public class Signal {
 		this.parameters = params;
 		this.signalName = signalName;
 		this.returnParameter = returnParam.getClass();
+		this.keyExtractor = null;
 		if (returnParameter == null)
 		{
 			isVoid = true;
@@ -84,7 +114,7 @@ public class Signal {
 		}
 
 		try {
-			SASHandler.registerSignal(this);
+			this.structure = SASHandler.registerSignal(this);
 		} catch (SignalNameInUseException e) {
 			e.printStackTrace();
 		}
@@ -126,6 +156,113 @@ public class Signal {
 		return this.returnParameter;
 	}
 
+	/**
+	 * Getter for the routing key extractor
+	 * @return	The extractor, or null if this signal is not keyed
+	 */
+	public KeyExtractor getKeyExtractor()
+	{
+		return this.keyExtractor;
+	}
+
+	/**
+	 * Sets a time budget for the slots of this signal, when run on the worker pool or through invokeAsync. Slots that run past it are cancelled by
+	 * interrupting them. Slots with a budget of their own (see Slot.setTimeout) use that instead.
+	 * 
+	 * @param timeout	The budget, or 0 for no limit
+	 * @param unit		The unit of the budget
+	 */
+	public void setSlotTimeout(long timeout, TimeUnit unit)
+	{
+		if (timeout < 0)
+		{
+			throw new IllegalArgumentException("Error: The timeout cannot be negative");
+		}
+		this.slotTimeoutNanos = unit.toNanos(timeout);
+	}
+	
+	/**
+	 * Getter for the time budget of the slots of this signal
+	 * @return	The budget in nanoseconds, or 0 for no limit
+	 */
+	public long getSlotTimeoutNanos()
+	{
+		return this.slotTimeoutNanos;
+	}
+
+	/**
+	 * Sets the partition key extractor of this signal. When set, the slots of this signal are run on the handler's partitioned lanes rather than the
+	 * threadpool: every invoke with the same partition key runs on the same worker thread, in the order it was made, while different keys are spread 
+	 * across the lanes. This applies to void signals and to invokeAsync.
+	 * 
+	 * @param partitioner	The extractor for the partition key, or null to use the threadpool
+	 */
+	public void setPartitioner(KeyExtractor partitioner)
+	{
+		this.partitioner = partitioner;
+	}
+	
+	/**
+	 * Getter for the partition key extractor
+	 * @return	The extractor, or null if this signal is not partitioned
+	 */
+	public KeyExtractor getPartitioner()
+	{
+		return this.partitioner;
+	}
+
+	/**
+	 * Sets this signal's share of the worker pool against the other signals using it. See SASHandler.setSchedulingWeight
+	 * 
+	 * @param weight	The weight (defaults to 1)
+	 */
+	public void setSchedulingWeight(int weight)
+	{
+		SASHandler.setSchedulingWeight(this.signalName, weight);
+	}
+	
+	/**
+	 * Caps the number of this signal's slots that may run on the worker pool at once
+	 * 
+	 * @param maxRunning	The cap, or 0 for no cap (the default)
+	 */
+	public void setMaxConcurrency(int maxRunning)
+	{
+		SASHandler.setMaxConcurrency(this.signalName, maxRunning);
+	}
+
+	/**
+	 * Enables a cache of this signal's results, keyed by its arguments, for pure lookups that are invoked repeatedly with the same arguments. The cache 
+	 * is emptied whenever the signal's slots change, and results are returned as unmodifiable lists. Only non-void signals can cache their results.
+	 * 
+	 * @param maxSize	The maximum number of results held, beyond which the least recently used is evicted
+	 * @param ttl		The time to live of each result, or 0 to keep results until evicted or invalidated
+	 * @param unit		The unit of the time to live
+	 * @return	The cache, for reading its hit and miss statistics
+	 */
+	public ResultCache enableResultCache(int maxSize, long ttl, TimeUnit unit)
+	{
+		return SASHandler.enableResultCache(this, maxSize, ttl, unit);
+	}
+	
+	/**
+	 * Stops caching this signal's results
+	 */
+	public void disableResultCache()
+	{
+		SASHandler.disableResultCache(this);
+	}
+	
+	/**
+	 * Sets the error handler for failures of this signal's slots, in place of the handler set on the SASHandler
+	 * 
+	 * @param errorHandler	The handler, or null to use the SASHandler's
+	 */
+	public void setErrorHandler(SlotErrorHandler errorHandler)
+	{
+		SASHandler.setErrorHandler(this, errorHandler);
+	}
+
 	/**
 	 * Invokes the attached methods to this signal
 	 * 
@@ -134,6 +271,120 @@ public class Signal {
 	 * @throws IllegalArgumentException		Thrown if the argument parameters are not as expected
 	 */
 	public List<?> invoke(Object[] varargs) throws IllegalArgumentException 
+	{
+		validate(varargs);
+		return SASHandler.invoke(this, varargs);
+	}
+	
+	/**
+	 * Checks whether any slots are attached to this signal. This costs about as much as a volatile read, so can guard emits whose arguments are 
+	 * expensive to build.
+	 * 
+	 * @return	True if at least one slot is attached
+	 */
+	public boolean hasListeners()
+	{
+		SignalStructure struct = this.structure;
+		return struct != null && struct.hasSlots();
+	}
+	
+	/**
+	 * Invokes the attached methods to this signal, only building the arguments if a slot is attached. With no slots attached, this returns without 
+	 * calling the supplier, validating, or allocating.
+	 * 
+	 * @param supplier		The supplier of the arguments
+	 * @return		The expected return object (or null if how it is set)
+	 * @throws IllegalArgumentException		Thrown if the supplied argument parameters are not as expected
+	 */
+	public List<?> invokeLazily(ArgumentSupplier supplier) throws IllegalArgumentException
+	{
+		if (!hasListeners())
+		{
+			return Collections.emptyList();
+		}
+		return invoke(supplier.getArguments());
+	}
+	
+	/**
+	 * Invokes the attached methods to this keyed signal, only building the arguments if a slot would be called for the routing key: an unkeyed slot, 
+	 * a slot routed on the key, or a filtered slot accepting it. The key must be the one the signal's key extractor would return for the supplied 
+	 * arguments.
+	 * 
+	 * @param routingKey	The routing key of the invoke
+	 * @param supplier		The supplier of the arguments
+	 * @return		The expected return object (or null if how it is set)
+	 * @throws IllegalArgumentException		Thrown if the supplied argument parameters are not as expected
+	 */
+	public List<?> invokeLazily(Object routingKey, ArgumentSupplier supplier) throws IllegalArgumentException
+	{
+		SignalStructure struct = this.structure;
+		if (struct == null || !(this.keyExtractor == null ? struct.hasSlots() : struct.hasTargets(routingKey)))
+		{
+			return Collections.emptyList();
+		}
+		return invoke(supplier.getArguments());
+	}
+	
+	/**
+	 * Invokes the attached methods to this signal once, after a delay. The emission is held in the handler's timer wheel, so scheduling and 
+	 * cancelling cost the same however many emissions are waiting, and it is accurate to the wheel's tick (1ms by default). When due, it goes through
+	 * the normal invoke on the worker pool (so a slow slot cannot hold up other emissions), and any return values are discarded.
+	 * 
+	 * @param varargs		The arguments being passed in
+	 * @param delay			The delay before the emission
+	 * @param unit			The unit of the delay
+	 * @return		The handle to cancel the emission with
+	 * @throws IllegalArgumentException		Thrown if the argument parameters are not as expected
+	 */
+	public ScheduledEmission invokeAfter(Object[] varargs, long delay, TimeUnit unit) throws IllegalArgumentException
+	{
+		validate(varargs);
+		return SASHandler.getTimerWheel().schedule(this, varargs, unit.toNanos(delay), 0);
+	}
+	
+	/**
+	 * Invokes the attached methods to this signal repeatedly, at a fixed rate, until the returned handle is cancelled or the signal is unregistered. See
+	 * invokeAfter. Failures of slots are reported as usual, but if the invoke itself throws (for example, as its lanes have been shut down), the 
+	 * emissions are stopped and the handle is cancelled.
+	 * 
+	 * @param varargs		The arguments being passed in, on every emission
+	 * @param initialDelay	The delay before the first emission
+	 * @param period		The period between emissions
+	 * @param unit			The unit of the delay and period
+	 * @return		The handle to cancel the emissions with
+	 * @throws IllegalArgumentException		Thrown if the argument parameters are not as expected, or the period is not positive
+	 */
+	public ScheduledEmission invokeEvery(Object[] varargs, long initialDelay, long period, TimeUnit unit) throws IllegalArgumentException
+	{
+		if (period <= 0)
+		{
+			throw new IllegalArgumentException("Error: The period must be positive");
+		}
+		validate(varargs);
+		return SASHandler.getTimerWheel().schedule(this, varargs, unit.toNanos(initialDelay), unit.toNanos(period));
+	}
+	
+	/**
+	 * Invokes the attached methods to this signal on the worker pool, returning a future for each slot's return value. This works for signals with a 
+	 * return type too, so the slots can run in parallel. Futures of slots that run past their time budget are cancelled.
+	 * 
+	 * @param varargs		The arguments being passed in
+	 * @return		A future for each slot called
+	 * @throws IllegalArgumentException		Thrown if the argument parameters are not as expected
+	 */
+	public List<Future<Object>> invokeAsync(Object[] varargs) throws IllegalArgumentException 
+	{
+		validate(varargs);
+		return SASHandler.invokeAsync(this, varargs);
+	}
+	
+	/**
+	 * Checks that arguments match the parameters of this signal
+	 * 
+	 * @param varargs		The arguments to check
+	 * @throws IllegalArgumentException		Thrown if the argument parameters are not as expected
+	 */
+	public void validate(Object[] varargs) throws IllegalArgumentException
 	{
 		if (varargs == null)
 		{
@@ -156,16 +407,16 @@ public class Signal {
 				if (!parameters[i].isInstance(varargs[i]))
 				{
 					throw new IllegalArgumentException("Error: The entered object of class: " + 
-				        varargs[i].getClass() + " does not match the expected class: "
+				        (varargs[i] == null ? null : varargs[i].getClass()) + " does not match the expected class: "
 				        + parameters[i]);
 				}
 			}
 		}
-		return SASHandler.invoke(this, varargs);
 	}
 	
 	/**
-	 * unregisters a signal from the SAS Handler. This means no more slots can register, and any current slot attached is deregistered.
+	 * unregisters a signal from the SAS Handler. This means no more slots can register, any current slot attached is deregistered, and any delayed or
+	 * periodic emission of the signal is cancelled.
 	 */
 	public void unRegisterSignal()
 	{
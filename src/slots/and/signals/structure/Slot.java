@@ -2,10 +2,13 @@ package slots.and.signals.structure;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
 
+import slots.and.signals.exceptions.ErrorCode;
 import slots.and.signals.exceptions.InvalidMethodException;
 import slots.and.signals.exceptions.InvalidReturnTypeException;
 import slots.and.signals.structure.manager.SASHandler;
+import slots.and.signals.structure.manager.support.SlotStatistics;
 
 /**
  * A class to handle receiving of method processing requests from outside the project. This class registers with a listener object, that then calls the specified
@@ -32,6 +35,14 @@ public class Slot {
 	
 	protected final Class<?> returnType;
 	
+	protected final SlotStatistics statistics = new SlotStatistics(this);
+	
+	protected volatile Object routingKey = null;
+	
+	protected volatile SlotFilter routingFilter = null;
+	
+	protected volatile long timeoutNanos = 0;
+	
 	/**
 	 * Generates a new Slot object
 	 * 
@@ -45,6 +56,112 @@ public class Slot {
 	 * @throws IllegalArgumentException 	Thrown if the arguments do not match the signal's arguments
 	 */
 	public Slot (Object targetObject, String targetMethod, String targetString, Class<?>[] parameters, Class<?> returnType) throws InvalidMethodException, IllegalArgumentException, InvalidReturnTypeException
+	{
+		this(targetObject, targetMethod, targetString, parameters, returnType, null, null);
+	}
+	
+	/**
+	 * Generates a new Slot object
+	 * 
+	 * @param st				The class that implements the SlotMethod interface. Note that this attaches to one method, and means you cannot attach another signal using a different method
+	 * @param targetString		The name of the signal to bind to
+	 * @param parameters		The class types of the parameters the method takes
+	 * @param returnType		The class of the return type the method returns
+	 * @throws IllegalArgumentException 	Thrown if the arguments do not match the signal's arguments
+	 * @throws InvalidReturnTypeException 	Thrown if the return type does not match the signal's return type
+	 */
+	public Slot (SlotMethod st, String targetString, Class<?>[] parameters, Class<?> returnType) throws IllegalArgumentException, InvalidReturnTypeException
+	{
+		this(st, targetString, parameters, returnType, null, null);
+	}
+	
+	/**
+	 * Generates a new Slot object routed to a single key of a keyed signal, as with routeOnKey. As the key is set before the slot registers, the slot 
+	 * is never called for other keys.
+	 * 
+	 * @param targetObject	The object which contains the entered method
+	 * @param targetMethod	The method name which should be called on triggering
+	 * @param targetString	The target name of the signal to align to 
+	 * @param parameters	The class types of the parameters taken by the target method
+	 * @param returnType	The class of the return type returned by the method
+	 * @param routingKey	The key to route on, or null to receive every invoke
+	 * @throws InvalidMethodException 		Thrown if the method cannot be found
+	 * @throws InvalidReturnTypeException 	Thrown if the return type does not match the signal's return type
+	 * @throws IllegalArgumentException 	Thrown if the arguments do not match the signal's arguments
+	 */
+	public Slot (Object targetObject, String targetMethod, String targetString, Class<?>[] parameters, Class<?> returnType, Object routingKey) throws InvalidMethodException, IllegalArgumentException, InvalidReturnTypeException
+	{
+		this(targetObject, targetMethod, targetString, parameters, returnType, routingKey, null);
+	}
+	
+	/**
+	 * Generates a new Slot object routed to the keys of a keyed signal that pass the filter, as with routeOnFilter. As the filter is set before the slot 
+	 * registers, the slot is never called for other keys.
+	 * 
+	 * @param targetObject	The object which contains the entered method
+	 * @param targetMethod	The method name which should be called on triggering
+	 * @param targetString	The target name of the signal to align to 
+	 * @param parameters	The class types of the parameters taken by the target method
+	 * @param returnType	The class of the return type returned by the method
+	 * @param routingFilter	The filter to route on, or null to receive every invoke
+	 * @throws InvalidMethodException 		Thrown if the method cannot be found
+	 * @throws InvalidReturnTypeException 	Thrown if the return type does not match the signal's return type
+	 * @throws IllegalArgumentException 	Thrown if the arguments do not match the signal's arguments
+	 */
+	public Slot (Object targetObject, String targetMethod, String targetString, Class<?>[] parameters, Class<?> returnType, SlotFilter routingFilter) throws InvalidMethodException, IllegalArgumentException, InvalidReturnTypeException
+	{
+		this(targetObject, targetMethod, targetString, parameters, returnType, null, routingFilter);
+	}
+	
+	/**
+	 * Generates a new Slot object routed to a single key of a keyed signal, as with routeOnKey. As the key is set before the slot registers, the slot 
+	 * is never called for other keys.
+	 * 
+	 * @param st				The class that implements the SlotMethod interface. Note that this attaches to one method, and means you cannot attach another signal using a different method
+	 * @param targetString		The name of the signal to bind to
+	 * @param parameters		The class types of the parameters the method takes
+	 * @param returnType		The class of the return type the method returns
+	 * @param routingKey		The key to route on, or null to receive every invoke
+	 * @throws IllegalArgumentException 	Thrown if the arguments do not match the signal's arguments
+	 * @throws InvalidReturnTypeException 	Thrown if the return type does not match the signal's return type
+	 */
+	public Slot (SlotMethod st, String targetString, Class<?>[] parameters, Class<?> returnType, Object routingKey) throws IllegalArgumentException, InvalidReturnTypeException
+	{
+		this(st, targetString, parameters, returnType, routingKey, null);
+	}
+	
+	/**
+	 * Generates a new Slot object routed to the keys of a keyed signal that pass the filter, as with routeOnFilter. As the filter is set before the slot 
+	 * registers, the slot is never called for other keys.
+	 * 
+	 * @param st				The class that implements the SlotMethod interface. Note that this attaches to one method, and means you cannot attach another signal using a different method
+	 * @param targetString		The name of the signal to bind to
+	 * @param parameters		The class types of the parameters the method takes
+	 * @param returnType		The class of the return type the method returns
+	 * @param routingFilter		The filter to route on, or null to receive every invoke
+	 * @throws IllegalArgumentException 	Thrown if the arguments do not match the signal's arguments
+	 * @throws InvalidReturnTypeException 	Thrown if the return type does not match the signal's return type
+	 */
+	public Slot (SlotMethod st, String targetString, Class<?>[] parameters, Class<?> returnType, SlotFilter routingFilter) throws IllegalArgumentException, InvalidReturnTypeException
+	{
+		this(st, targetString, parameters, returnType, null, routingFilter);
+	}
+	
+	/**
+	 * Generates a new Slot object with its routing set before it registers
+	 * 
+	 * @param targetObject	The object which contains the entered method
+	 * @param targetMethod	The method name which should be called on triggering
+	 * @param targetString	The target name of the signal to align to 
+	 * @param parameters	The class types of the parameters taken by the target method
+	 * @param returnType	The class of the return type returned by the method
+	 * @param routingKey	The key to route on (this can be null)
+	 * @param routingFilter	The filter to route on, if there is no key (this can be null)
+	 * @throws InvalidMethodException 		Thrown if the method cannot be found
+	 * @throws InvalidReturnTypeException 	Thrown if the return type does not match the signal's return type
+	 * @throws IllegalArgumentException 	Thrown if the arguments do not match the signal's arguments
+	 */
+	protected Slot (Object targetObject, String targetMethod, String targetString, Class<?>[] parameters, Class<?> returnType, Object routingKey, SlotFilter routingFilter) throws InvalidMethodException, IllegalArgumentException, InvalidReturnTypeException
 	{
 		try {
 			this.targetMethod = targetObject.getClass().getMethod(targetMethod, parameters);
@@ -60,26 +177,32 @@ public class Slot {
 				+ targetMethod + " with the specified parameters " +
 				"does not exist");
 		}
+		this.routingKey = routingKey;
+		this.routingFilter = routingKey == null ? routingFilter : null;
 		SASHandler.registerSlot(this, this.targetString, parameters);
 	}
 	
 	/**
-	 * Generates a new Slot object
+	 * Generates a new Slot object with its routing set before it registers
 	 * 
-	 * @param st				The class that implements the SlotMethod interface. Note that this attaches to one method, and means you cannot attach another signal using a different method
+	 * @param st				The class that implements the SlotMethod interface
 	 * @param targetString		The name of the signal to bind to
 	 * @param parameters		The class types of the parameters the method takes
 	 * @param returnType		The class of the return type the method returns
+	 * @param routingKey		The key to route on (this can be null)
+	 * @param routingFilter		The filter to route on, if there is no key (this can be null)
 	 * @throws IllegalArgumentException 	Thrown if the arguments do not match the signal's arguments
 	 * @throws InvalidReturnTypeException 	Thrown if the return type does not match the signal's return type
 	 */
-	public Slot (SlotMethod st, String targetString, Class<?>[] parameters, Class<?> returnType) throws IllegalArgumentException, InvalidReturnTypeException
+	protected Slot (SlotMethod st, String targetString, Class<?>[] parameters, Class<?> returnType, Object routingKey, SlotFilter routingFilter) throws IllegalArgumentException, InvalidReturnTypeException
 	{
 		this.slotMethod = st;
 		this.targetObject = null;
 		this.targetMethod = null;
 		this.targetString = targetString;
 		this.returnType = returnType;
+		this.routingKey = routingKey;
+		this.routingFilter = routingKey == null ? routingFilter : null;
 		SASHandler.registerSlot(this, this.targetString, parameters);
 	}
 	
@@ -163,7 +286,8 @@ public class Slot {
 	}
 	
 	/**
-	 * Called by the SASHandler when it is triggered, this runs the method after checking the necessary objects.
+	 * Called by the SASHandler when it is triggered, this runs the method after checking the necessary objects. Failures (the method throwing, or returning
+	 * the wrong type) are passed to the signal's error handler, rather than thrown.
 	 * NOTE: This is NOT threadsafe, and could possibly trigger concurrency problems if not correctly used. If you want a (more) threadsafe implementation, try SynchroSlot (
 	 * 
 	 * @param varargs	The arguments passed by the signal
@@ -176,57 +300,36 @@ public class Slot {
 		{
 			if (slotMethod == null)
 			{
-				try {
-					if (this.targetMethod.isAccessible() != true)
-					{
-						this.targetMethod.setAccessible(true);
-					}
-					returnVal = this.targetMethod.invoke(targetObject, varargs);
-					
-					if (returnVal == null && this.returnType != null)
-					{
-						throw new InvalidReturnTypeException("Error: The return type is not expected to be null");
-					}
-					else
-					{
-						if (this.returnType != null && !this.returnType.isInstance(returnVal))
-						{
-							throw new InvalidReturnTypeException("Error: The return type: "
-								    + returnVal.getClass() + " does not match the expected return type: "
-								    + this.returnType);
-						}
-					}
-				} catch (IllegalAccessException e) {
-					throw new InvalidMethodException("Error: This thread does not have access to this method");
-				} catch (InvocationTargetException e) {
-					throw new InvalidMethodException("Error: The specified method of name: "
-					    + this.targetMethod.getName() + " with the specified parameters " +
-					    "does not exist");
+				if (this.targetMethod.isAccessible() != true)
+				{
+					this.targetMethod.setAccessible(true);
 				}
+				returnVal = this.targetMethod.invoke(targetObject, varargs);
 			}
 			else
 			{
 				returnVal = this.slotMethod.invoke(varargs);
-				if (returnVal == null && this.returnType != null)
-				{
-					throw new InvalidReturnTypeException("Error: The return type is not expected to be null");
-				}
-				else
-				{
-					if (!this.returnType.isInstance(returnVal))
-					{
-						throw new InvalidReturnTypeException("Error: The return type: "
-							    + returnVal.getClass() + " does not match the expected return type: "
-							    + this.returnType);
-					}
-				}
 			}
+		} catch (IllegalAccessException e) {
+			SASHandler.reportFailure(this, ErrorCode.METHOD_ACCESS, e, null);
+			return null;
+		} catch (InvocationTargetException e) {
+			SASHandler.reportFailure(this, ErrorCode.SLOT_THREW, e.getCause(), null);
+			return null;
+		} catch (RuntimeException e) {
+			SASHandler.reportFailure(this, ErrorCode.SLOT_THREW, e, null);
+			return null;
 		}
-		catch (InvalidMethodException e)
+		if (this.returnType != null)
 		{
-			e.printStackTrace();
-		} catch (InvalidReturnTypeException e) {
-			e.printStackTrace();
+			if (returnVal == null)
+			{
+				SASHandler.reportFailure(this, ErrorCode.NULL_RETURN, null, null);
+			}
+			else if (!this.returnType.isInstance(returnVal))
+			{
+				SASHandler.reportFailure(this, ErrorCode.INVALID_RETURN_TYPE, null, returnVal.getClass());
+			}
 		}
 		return returnVal;
 	}
@@ -248,6 +351,15 @@ public class Slot {
 		SASHandler.unRegisterSlot(this, targetString);
 	}
 	
+	/**
+	 * Getter to return the name of the signal this slot is attached to
+	 * @return
+	 */
+	public String getTargetSignal()
+	{
+		return this.targetString;
+	}
+	
 	/**
 	 * Getter to return the priority of this slot
 	 * @return
@@ -265,5 +377,94 @@ public class Slot {
 	{
 		this.priority = priority;
 	}
+	
+	/**
+	 * Routes this slot to a single key of a keyed signal, so it is only called when the signal's key extractor returns an equal key. 
+	 * This has no effect on signals without a key extractor, which call every slot. As the slot has already registered, it receives every key until this
+	 * is called; to route a slot from the start, pass the key to the constructor.
+	 * 
+	 * @param key	The key to route on, or null to receive every invoke
+	 */
+	public synchronized void routeOnKey(Object key)
+	{
+		this.routingFilter = null;
+		this.routingKey = key;
+		SASHandler.reindexSlot(this, targetString);
+	}
+	
+	/**
+	 * Routes this slot to every key of a keyed signal that passes the filter. Note filtered slots are checked on every invoke, so prefer routeOnKey
+	 * where a single key will do. To route a slot from the start, pass the filter to the constructor.
+	 * 
+	 * @param filter	The filter to route on, or null to receive every invoke
+	 */
+	public synchronized void routeOnFilter(SlotFilter filter)
+	{
+		this.routingKey = null;
+		this.routingFilter = filter;
+		SASHandler.reindexSlot(this, targetString);
+	}
+	
+	/**
+	 * Getter to return the key this slot is routed on
+	 * @return	The key, or null if the slot is not routed on a single key
+	 */
+	public Object getRoutingKey()
+	{
+		return this.routingKey;
+	}
+	
+	/**
+	 * Getter to return the filter this slot is routed on
+	 * @return	The filter, or null if the slot is not routed on a filter
+	 */
+	public SlotFilter getRoutingFilter()
+	{
+		return this.routingFilter;
+	}
+	
+	/**
+	 * Sets a time budget for this slot. A slot with a budget is always run on the worker pool (or on the caller's future, for invokeAsync), and is 
+	 * cancelled by interrupting it if it runs past the budget. This overrides any budget set on the signal.
+	 * 
+	 * @param timeout	The budget, or 0 to use the signal's budget
+	 * @param unit		The unit of the budget
+	 */
+	public void setTimeout(long timeout, TimeUnit unit)
+	{
+		if (timeout < 0)
+		{
+			throw new IllegalArgumentException("Error: The timeout cannot be negative");
+		}
+		this.timeoutNanos = unit.toNanos(timeout);
+	}
+	
+	/**
+	 * Getter to return the time budget of this slot
+	 * @return	The budget in nanoseconds, or 0 if the slot has no budget of its own
+	 */
+	public long getTimeoutNanos()
+	{
+		return this.timeoutNanos;
+	}
+	
+	/**
+	 * Getter for whether this slot must run on the invoking thread. Such slots are never handed to the worker pool or partitioned lanes (other than
+	 * through invokeAsync), so anything they do, such as blocking, is felt directly by the emitter.
+	 * @return	False for a standard slot
+	 */
+	public boolean isInline()
+	{
+		return false;
+	}
+	
+	/**
+	 * Getter to return the measured execution cost of this slot, and the dispatch decisions the handler has made for it
+	 * @return
+	 */
+	public SlotStatistics getStatistics()
+	{
+		return this.statistics;
+	}
 
 }
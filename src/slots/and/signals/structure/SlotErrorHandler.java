@@ -0,0 +1,18 @@
+package slots.and.signals.structure;
+
+import slots.and.signals.exceptions.SlotException;
+
+/**
+ * Interface to receive slot failures, either for every signal (see SASHandler.setErrorHandler) or for a single signal (see Signal.setErrorHandler). 
+ * Handlers are called on the thread the slot failed on, so should be quick; they are free to re-emit the failure on an error signal.
+ * @author walfordt
+ */
+public interface SlotErrorHandler 
+{
+	/**
+	 * Called by the SASHandler when a slot fails.
+	 * 
+	 * @param error		The failure. Note this has no stack trace of its own; the underlying exception, if any, is its cause
+	 */
+	public void onError(SlotException error);
+}
@@ -0,0 +1,16 @@
+package slots.and.signals.structure;
+
+/**
+ * Interface to allow a slot to accept a range of routing keys from a keyed signal, rather than a single key.
+ * @author walfordt
+ */
+public interface SlotFilter 
+{
+	/**
+	 * Called by the SASHandler on every invoke of a keyed signal, this decides whether the slot should be called.
+	 * 
+	 * @param key	The routing key extracted from the signal's arguments
+	 * @return	True if the slot should be called for this key
+	 */
+	public boolean accept(Object key);
+}
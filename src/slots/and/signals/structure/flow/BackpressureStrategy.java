@@ -0,0 +1,18 @@
+package slots.and.signals.structure.flow;
+
+/**
+ * What a flow subscriber slot does with an emission when its subscriber has no outstanding demand.
+ * @author walfordt
+ */
+public enum BackpressureStrategy 
+{
+	/**
+	 * Block the emitting thread until the subscriber requests more, or cancels
+	 */
+	BLOCK,
+	
+	/**
+	 * Drop the emission, counting it against the subscription
+	 */
+	DROP
+}
@@ -0,0 +1,267 @@
+package slots.and.signals.structure.flow;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+import slots.and.signals.exceptions.ErrorCode;
+import slots.and.signals.structure.Slot;
+import slots.and.signals.structure.SlotMethod;
+import slots.and.signals.structure.manager.SASHandler;
+
+/**
+ * The subscription between a signal and a Flow subscriber. As the slot method of a SubscriberSlot, it passes each emission to the subscriber while the
+ * subscriber has outstanding demand. Once demand runs out, the emitting thread is blocked (or the emission dropped) until the subscriber requests more, 
+ * so backpressure reaches the emitter rather than building up in a queue.
+ * @author walfordt
+ */
+public class FlowSubscription implements Flow.Subscription, SlotMethod 
+{
+	
+	private final Flow.Subscriber<? super Object[]> subscriber;
+	
+	private final BackpressureStrategy strategy;
+	
+	private final AtomicLong demand = new AtomicLong();
+	
+	private final AtomicLong dropped = new AtomicLong();
+	
+	private final Object demandLock = new Object();
+	
+	private final Object deliveryLock = new Object();
+	
+	private volatile boolean cancelled = false;
+	
+	private volatile Slot slot;
+	
+	private volatile Runnable cancelHandler;
+	
+	/**
+	 * Creates a new subscription
+	 * 
+	 * @param subscriber	The subscriber to deliver to
+	 * @param strategy		What to do with emissions when the subscriber has no demand
+	 */
+	public FlowSubscription(Flow.Subscriber<? super Object[]> subscriber, BackpressureStrategy strategy)
+	{
+		this.subscriber = subscriber;
+		this.strategy = strategy;
+	}
+	
+	/**
+	 * Attaches the slot this subscription delivers through, so cancelling the subscription can deregister it
+	 * 
+	 * @param slot	The slot
+	 */
+	void attach(Slot slot)
+	{
+		this.slot = slot;
+		if (this.cancelled)
+		{
+			slot.deregisterSlot();
+		}
+	}
+	
+	/**
+	 * Passes the subscription to the subscriber. This holds the delivery lock, so an emitter released by a request made inside onSubscribe waits for 
+	 * onSubscribe to return before delivering
+	 */
+	void subscribe()
+	{
+		synchronized (this.deliveryLock)
+		{
+			this.subscriber.onSubscribe(this);
+		}
+	}
+	
+	/**
+	 * Sets a task to run once the subscription is cancelled or completed, such as removing it from its publisher. If the subscription has already ended,
+	 * the task is run straight away
+	 * 
+	 * @param handler	The task to run
+	 */
+	void setCancelHandler(Runnable handler)
+	{
+		this.cancelHandler = handler;
+		if (this.cancelled)
+		{
+			handler.run();
+		}
+	}
+	
+	/**
+	 * Called by the slot on each emission, this waits for demand and then passes the arguments to the subscriber.
+	 * 
+	 * @param varargs	The arguments passed by the signal
+	 * @return	Always null, as flow signals are void
+	 */
+	@Override
+	public Object invoke(Object[] varargs)
+	{
+		if (!acquireDemand())
+		{
+			return null;
+		}
+		synchronized (this.deliveryLock)
+		{
+			if (this.cancelled)
+			{
+				return null;
+			}
+			try {
+				this.subscriber.onNext(varargs);
+			} catch (RuntimeException e) {
+				// A subscriber that throws is treated as having cancelled
+				cancel();
+				SASHandler.reportFailure(this.slot, ErrorCode.SLOT_THREW, e, null);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Adds demand for more emissions, waking any emitters blocked on this subscription
+	 * 
+	 * @param n		The number of further emissions wanted
+	 */
+	@Override
+	public void request(long n)
+	{
+		if (n <= 0)
+		{
+			if (this.cancelled)
+			{
+				return;
+			}
+			cancel();
+			// Under the delivery lock, so the error cannot overlap an emission being delivered
+			synchronized (this.deliveryLock)
+			{
+				this.subscriber.onError(new IllegalArgumentException("Error: The requested demand must be positive, but was: " + n));
+			}
+			return;
+		}
+		long current;
+		long next;
+		do {
+			current = this.demand.get();
+			next = current + n;
+			if (next < 0)
+			{
+				next = Long.MAX_VALUE;
+			}
+		} while (!this.demand.compareAndSet(current, next));
+		synchronized (this.demandLock)
+		{
+			this.demandLock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Cancels the subscription, deregistering its slot and releasing any blocked emitters
+	 */
+	@Override
+	public void cancel()
+	{
+		if (this.cancelled)
+		{
+			return;
+		}
+		this.cancelled = true;
+		Slot attached = this.slot;
+		if (attached != null)
+		{
+			attached.deregisterSlot();
+		}
+		synchronized (this.demandLock)
+		{
+			this.demandLock.notifyAll();
+		}
+		Runnable handler = this.cancelHandler;
+		if (handler != null)
+		{
+			handler.run();
+		}
+	}
+	
+	/**
+	 * Completes the subscription, deregistering its slot and signalling the subscriber that no more emissions will come
+	 */
+	public void complete()
+	{
+		if (this.cancelled)
+		{
+			return;
+		}
+		cancel();
+		synchronized (this.deliveryLock)
+		{
+			this.subscriber.onComplete();
+		}
+	}
+	
+	/**
+	 * Getter to get the outstanding demand
+	 * @return
+	 */
+	public long getDemand()
+	{
+		return this.demand.get();
+	}
+	
+	/**
+	 * Getter to get the number of emissions dropped for lack of demand
+	 * @return
+	 */
+	public long getDropped()
+	{
+		return this.dropped.get();
+	}
+	
+	/**
+	 * Getter for whether the subscription has been cancelled or completed
+	 * @return
+	 */
+	public boolean isCancelled()
+	{
+		return this.cancelled;
+	}
+	
+	private boolean acquireDemand()
+	{
+		while (true)
+		{
+			if (this.cancelled)
+			{
+				return false;
+			}
+			long current = this.demand.get();
+			if (current > 0)
+			{
+				long next = current == Long.MAX_VALUE ? current : current - 1;
+				if (this.demand.compareAndSet(current, next))
+				{
+					return true;
+				}
+				continue;
+			}
+			if (this.strategy == BackpressureStrategy.DROP)
+			{
+				this.dropped.incrementAndGet();
+				return false;
+			}
+			synchronized (this.demandLock)
+			{
+				while (this.demand.get() == 0 && !this.cancelled)
+				{
+					try {
+						this.demandLock.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						this.dropped.incrementAndGet();
+						return false;
+					}
+				}
+			}
+		}
+	}
+}
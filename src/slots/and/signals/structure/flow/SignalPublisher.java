@@ -0,0 +1,128 @@
+package slots.and.signals.structure.flow;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+
+import slots.and.signals.structure.Signal;
+
+/**
+ * Exposes a void signal as a Flow publisher of its arguments. Each subscriber is attached to the signal through its own SubscriberSlot, which only passes on
+ * emissions the subscriber has requested. With the BLOCK strategy, a subscriber that falls behind holds back the emitting thread, so demand flows back to
+ * the emitter as backpressure. Emitters that would rather not block can check hasDemand() first.
+ * @author walfordt
+ */
+public class SignalPublisher implements Flow.Publisher<Object[]>
+{
+	
+	private final Signal signal;
+	
+	private final BackpressureStrategy strategy;
+	
+	private final List<SubscriberSlot> subscribers = new CopyOnWriteArrayList<SubscriberSlot>();
+	
+	/**
+	 * Creates a new publisher over the signal, blocking emitters when a subscriber has no demand
+	 * 
+	 * @param signal	The signal to publish. This must be a void signal
+	 */
+	public SignalPublisher(Signal signal)
+	{
+		this(signal, BackpressureStrategy.BLOCK);
+	}
+	
+	/**
+	 * Creates a new publisher over the signal
+	 * 
+	 * @param signal	The signal to publish. This must be a void signal
+	 * @param strategy	What to do with emissions when a subscriber has no demand
+	 */
+	public SignalPublisher(Signal signal, BackpressureStrategy strategy)
+	{
+		if (!signal.isVoid())
+		{
+			throw new IllegalArgumentException("Error: Only void signals can be published");
+		}
+		this.signal = signal;
+		this.strategy = strategy;
+	}
+	
+	/**
+	 * Subscribes to the signal's emissions. If the subscriber cannot be attached, it receives an empty subscription followed by onError
+	 * 
+	 * @param subscriber	The subscriber
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super Object[]> subscriber)
+	{
+		if (subscriber == null)
+		{
+			throw new NullPointerException("Error: The subscriber cannot be null");
+		}
+		final SubscriberSlot slot;
+		try {
+			slot = new SubscriberSlot(subscriber, this.signal.getSignalName(), this.signal.getParams(), this.strategy);
+		} catch (Exception e) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) 
+				{
+				}
+				
+				@Override
+				public void cancel() 
+				{
+				}
+			});
+			subscriber.onError(e);
+			return;
+		}
+		this.subscribers.add(slot);
+		// Added first, so a subscriber that cancelled from onSubscribe is removed straight away
+		slot.getSubscription().setCancelHandler(new Runnable() {
+			@Override
+			public void run()
+			{
+				subscribers.remove(slot);
+			}
+		});
+	}
+	
+	/**
+	 * Getter to get the number of subscribers still attached
+	 * @return
+	 */
+	public int getSubscriberCount()
+	{
+		return this.subscribers.size();
+	}
+	
+	/**
+	 * Checks whether every current subscriber has outstanding demand, so that an emission will not block or be dropped
+	 * @return
+	 */
+	public boolean hasDemand()
+	{
+		for (SubscriberSlot slot : this.subscribers)
+		{
+			FlowSubscription subscription = slot.getSubscription();
+			if (!subscription.isCancelled() && subscription.getDemand() == 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Completes every subscriber, detaching them from the signal
+	 */
+	public void complete()
+	{
+		for (SubscriberSlot slot : this.subscribers)
+		{
+			slot.complete();
+		}
+		this.subscribers.clear();
+	}
+}
@@ -0,0 +1,78 @@
+package slots.and.signals.structure.flow;
+
+import java.util.concurrent.Flow;
+
+import slots.and.signals.exceptions.InvalidReturnTypeException;
+import slots.and.signals.structure.Slot;
+
+/**
+ * A slot that passes the emissions of a void signal to a Flow subscriber, as an Object[] of the signal's arguments. The slot always runs on the emitting
+ * thread, so when the subscriber has no outstanding demand the emitter is held back (or the emission dropped, depending on the strategy), rather than the
+ * emissions queueing up on the worker pool.
+ * 
+ * Deregistering the slot does not signal the subscriber; use complete() to end the stream, or cancel the subscription.
+ * @author walfordt
+ */
+public class SubscriberSlot extends Slot
+{
+	
+	/**
+	 * Generates a new subscriber slot, blocking the emitter when the subscriber has no demand
+	 * 
+	 * @param subscriber		The subscriber to deliver to
+	 * @param targetString		The name of the signal to bind to. This must be a void signal
+	 * @param parameters		The class types of the signal's parameters
+	 * @throws IllegalArgumentException 	Thrown if the arguments do not match the signal's arguments
+	 * @throws InvalidReturnTypeException 	Thrown if the signal is not void
+	 */
+	public SubscriberSlot(Flow.Subscriber<? super Object[]> subscriber, String targetString, Class<?>[] parameters) throws IllegalArgumentException, InvalidReturnTypeException
+	{
+		this(subscriber, targetString, parameters, BackpressureStrategy.BLOCK);
+	}
+	
+	/**
+	 * Generates a new subscriber slot
+	 * 
+	 * @param subscriber		The subscriber to deliver to
+	 * @param targetString		The name of the signal to bind to. This must be a void signal
+	 * @param parameters		The class types of the signal's parameters
+	 * @param strategy			What to do with emissions when the subscriber has no demand
+	 * @throws IllegalArgumentException 	Thrown if the arguments do not match the signal's arguments
+	 * @throws InvalidReturnTypeException 	Thrown if the signal is not void
+	 */
+	public SubscriberSlot(Flow.Subscriber<? super Object[]> subscriber, String targetString, Class<?>[] parameters, BackpressureStrategy strategy) throws IllegalArgumentException, InvalidReturnTypeException
+	{
+		super(new FlowSubscription(subscriber, strategy), targetString, parameters, (Class<?>) null);
+		FlowSubscription subscription = getSubscription();
+		subscription.attach(this);
+		subscription.subscribe();
+	}
+	
+	/**
+	 * Getter to get the subscription this slot delivers through
+	 * @return
+	 */
+	public FlowSubscription getSubscription()
+	{
+		return (FlowSubscription) this.slotMethod;
+	}
+	
+	/**
+	 * Ends the stream, deregistering this slot and signalling completion to the subscriber
+	 */
+	public void complete()
+	{
+		getSubscription().complete();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Subscriber slots always run inline, so backpressure reaches the emitter.
+	 */
+	@Override
+	public boolean isInline()
+	{
+		return true;
+	}
+}
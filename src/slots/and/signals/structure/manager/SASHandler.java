@@ -1,19 +1,31 @@
 package slots.and.signals.structure.manager;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+import slots.and.signals.exceptions.ErrorCode;
 import slots.and.signals.exceptions.InvalidReturnTypeException;
 import slots.and.signals.exceptions.SignalNameInUseException;
+import slots.and.signals.exceptions.SlotException;
+import slots.and.signals.structure.KeyExtractor;
 import slots.and.signals.structure.Signal;
 import slots.and.signals.structure.Slot;
+import slots.and.signals.structure.SlotErrorHandler;
+import slots.and.signals.structure.manager.support.RateLimitedErrorReporter;
+import slots.and.signals.structure.manager.support.ResultCache;
 import slots.and.signals.structure.manager.support.SignalStructure;
+import slots.and.signals.structure.manager.support.SlotBatch;
+import slots.and.signals.structure.manager.threading.FairBlockingQueue;
+import slots.and.signals.structure.manager.threading.PartitionedExecutor;
 import slots.and.signals.structure.manager.threading.SASRunner;
+import slots.and.signals.structure.manager.threading.SlotWatchdog;
+import slots.and.signals.structure.manager.threading.TimerWheel;
 
 /**
  * Handles the passing of values between threads and projects
@@ -26,14 +38,43 @@ public class SASHandler {
 	private static int MIN_THREADS = 5;
 	private static long THREAD_TIMEOUT = 500;
 	private static boolean USE_WORKER_THREADS = true;
+	private static volatile boolean USE_ADAPTIVE_DISPATCH = true;
+	private static volatile long ADAPTIVE_POOL_THRESHOLD = 50000;
 	
-	private static HashMap<String, SignalStructure> linker = new HashMap<String,SignalStructure>();
-	private static BlockingQueue<Runnable> threadQueue = new PriorityBlockingQueue<Runnable>(MAX_THREADS);
+	private static ConcurrentHashMap<String, SignalStructure> linker = new ConcurrentHashMap<String,SignalStructure>();
+	private static ThreadLocal<SlotBatch> slotBatch = new ThreadLocal<SlotBatch>();
+	
+	/**
+	 * The number of failures reported on each thread, read around a cached invoke so a result with a failed slot in it is not stored
+	 */
+	private static final ThreadLocal<int[]> threadFailures = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue()
+		{
+			return new int[1];
+		}
+	};
+	private static FairBlockingQueue threadQueue = new FairBlockingQueue();
 	private static ThreadPoolExecutor exec;
+	private static int PARTITIONS = Runtime.getRuntime().availableProcessors();
+	private static volatile PartitionedExecutor partitionedExec;
+	private static long TIMER_TICK = TimeUnit.MILLISECONDS.toNanos(1);
+	private static int TIMER_WHEEL_SIZE = 1024;
+	private static volatile TimerWheel timerWheel;
+	private static volatile SlotErrorHandler errorHandler = new RateLimitedErrorReporter(1, TimeUnit.SECONDS);
+	private static AtomicLongArray failureCounts = new AtomicLongArray(ErrorCode.values().length);
 	static {
 		if (USE_WORKER_THREADS)
 		{
-			exec = new ThreadPoolExecutor(MIN_THREADS, MAX_THREADS, THREAD_TIMEOUT, TimeUnit.MILLISECONDS, threadQueue);
+			exec = new ThreadPoolExecutor(MIN_THREADS, MAX_THREADS, THREAD_TIMEOUT, TimeUnit.MILLISECONDS, threadQueue) {
+				@Override
+				protected void afterExecute(Runnable task, Throwable thrown)
+				{
+					threadQueue.release(task);
+				}
+			};
+			// Started up front so every task goes through the fair queue, rather than straight to a new thread
+			exec.prestartAllCoreThreads();
 		}
 
 	}
@@ -42,29 +83,40 @@ public class SASHandler {
 	 * Registers a signal with the handler
 	 * 
 	 * @param signal	The signal to register
+	 * @return	The structure holding the signal's slots
 	 */
-	public static void registerSignal(Signal signal) throws SignalNameInUseException
+	public static SignalStructure registerSignal(Signal signal) throws SignalNameInUseException
 	{
-		if (linker.containsKey(signal.getSignalName()))
+		SignalStructure struct = new SignalStructure(signal.getParams(), new ArrayList<Slot>(), signal.getReturnParam());
+		if (linker.putIfAbsent(signal.getSignalName(), struct) != null)
 		{
 			throw new SignalNameInUseException("Error: This signal name is currently in use");
 		}
-		SignalStructure struct = new SignalStructure(signal.getParams(), new ArrayList<Slot>(), signal.getReturnParam());
-		linker.put(signal.getSignalName(), struct);
+		return struct;
 	}
 	
 	/**
-	 * Deregisters a signal with the handler
+	 * Deregisters a signal with the handler, cancelling its delayed and periodic emissions
 	 * 
 	 * @param signal	The signal to deregister
 	 */
 	public static void unRegisterSignal(Signal signal)
 	{
-		linker.remove(signal);
+		SignalStructure struct = linker.remove(signal.getSignalName());
+		if (struct != null)
+		{
+			struct.clear();
+		}
+		TimerWheel wheel = timerWheel;
+		if (wheel != null)
+		{
+			wheel.cancel(signal);
+		}
 	}
 	
 	/**
-	 * Registers a slot with the handler, attached to the specified signal
+	 * Registers a slot with the handler, attached to the specified signal. Inside a slot batch, the slot is only attached when the batch is committed, and
+	 * each distinct signature is only validated once.
 	 * 
 	 * @param slot			The slot to register
 	 * @param targetSignal	The name of the target signal to register to
@@ -75,6 +127,12 @@ public class SASHandler {
 	public static void registerSlot(Slot slot, String targetSignal, Class<?>[] params) throws IllegalArgumentException, InvalidReturnTypeException
 	{
 		SignalStructure struct = linker.get(targetSignal);
+		SlotBatch batch = slotBatch.get();
+		if (batch != null && batch.isValidated(targetSignal, params, slot.getReturnType()))
+		{
+			batch.add(struct, slot);
+			return;
+		}
 		if (params == null)
 		{
 			if (struct.getInvokerParameters() != null)
@@ -118,24 +176,138 @@ public class SASHandler {
 				    + struct.getReturnType());
 			}		
 		}
-		linker.get(targetSignal).getRegisteredSlots().add(slot);
+		if (batch != null)
+		{
+			batch.markValidated(targetSignal, params, slot.getReturnType());
+			batch.add(struct, slot);
+		}
+		else
+		{
+			struct.addSlot(slot);
+		}
 	}
 	
 	/**
-	 * deregisters a slot from the specified target signal
+	 * deregisters a slot from the specified target signal. Inside a slot batch, the slot is only detached when the batch is committed.
 	 * 
 	 * @param slot			The slot to deregister
 	 * @param targetSignal	The target signal
 	 */
 	public static void unRegisterSlot(Slot slot, String targetSignal)
 	{
-		linker.get(targetSignal).getRegisteredSlots().remove(slot);
+		SignalStructure struct = linker.get(targetSignal);
+		SlotBatch batch = slotBatch.get();
+		if (batch != null)
+		{
+			batch.remove(struct, slot);
+		}
+		else
+		{
+			struct.removeSlot(slot);
+		}
+	}
+	
+	/**
+	 * Deregisters a group of slots, publishing a single change per signal rather than one per slot
+	 * 
+	 * @param slots		The slots to deregister
+	 */
+	public static void unRegisterSlots(Collection<? extends Slot> slots)
+	{
+		beginSlotBatch();
+		try {
+			for (Slot slot : slots)
+			{
+				unRegisterSlot(slot, slot.getTargetSignal());
+			}
+		} finally {
+			commitSlotBatch();
+		}
+	}
+	
+	/**
+	 * Rebuilds the routing index of the target signal, after a slot's routing key or filter has changed
+	 * 
+	 * @param slot			The slot to reindex
+	 * @param targetSignal	The target signal
+	 */
+	public static void reindexSlot(Slot slot, String targetSignal)
+	{
+		SignalStructure struct = linker.get(targetSignal);
+		SlotBatch batch = slotBatch.get();
+		if (batch != null)
+		{
+			batch.reindex(struct);
+		}
+		else
+		{
+			struct.reindexSlot(slot);
+		}
+	}
+	
+	/**
+	 * Begins a slot batch on the current thread. Until the matching commitSlotBatch, slots created or deregistered on this thread are collected rather
+	 * than applied, and on commit each signal publishes a single new slot list. Use this when tearing down large numbers of slots, as each individual
+	 * deregistration copies the signal's slot list (a single registration appends in place), or to validate each slot signature once when wiring up
+	 * many slots. Batches may be nested, in which case the changes are applied by the outermost commit.
+	 * 
+	 * <pre>
+	 * SASHandler.beginSlotBatch();
+	 * try {
+	 *     // create slots
+	 * } finally {
+	 *     SASHandler.commitSlotBatch();
+	 * }
+	 * </pre>
+	 */
+	public static void beginSlotBatch()
+	{
+		SlotBatch batch = slotBatch.get();
+		if (batch == null)
+		{
+			slotBatch.set(new SlotBatch());
+		}
+		else
+		{
+			batch.enter();
+		}
+	}
+	
+	/**
+	 * Commits the slot batch begun on the current thread, applying its changes
+	 * 
+	 * @throws IllegalStateException	Thrown if no batch has been begun on this thread
+	 */
+	public static void commitSlotBatch() throws IllegalStateException
+	{
+		SlotBatch batch = slotBatch.get();
+		if (batch == null)
+		{
+			throw new IllegalStateException("Error: No slot batch has been begun on this thread");
+		}
+		if (batch.exit())
+		{
+			slotBatch.remove();
+			batch.apply();
+		}
 	}
 	
 	/**
 	 * Invokes all the slots attached to the invoking signal, with the vararg parameters.
 	 * 
 	 * Note: If USE_WORKER_THREADS is set to true, and the signal returns no values, the handler will attempt to thread each invoke using the threadpool.
+	 * With adaptive dispatch enabled, this choice is made per slot from its measured average cost: cheap slots are run inline on the invoking thread, and
+	 * expensive ones are handed to the threadpool. Slots that have not been measured yet fall back to pooling when the signal has more than one slot.
+	 * 
+	 * If the signal has a key extractor, only the slots routed to the extracted key (along with the unkeyed slots) are called. Slots with a time budget
+	 * are always run on the threadpool, so they can be cancelled, and slots quarantined by the watchdog are skipped. Inline slots (see Slot.isInline)
+	 * are always run on the invoking thread.
+	 * 
+	 * If the signal has a partitioner, its slots are instead run on the partitioned lanes, so every invoke with the same partition key is run in order
+	 * on the same thread.
+	 * 
+	 * If the signal has a result cache, a cached result for equal arguments is returned without calling any slots. Results of cached signals are 
+	 * returned as unmodifiable lists, as they are shared between invokes. A result is not cached if any slot failed while computing it.
 	 * @param signal
 	 * @param varargs
 	 * @return
@@ -143,25 +315,583 @@ public class SASHandler {
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public static List<?> invoke(Signal signal, Object[] varargs)
 	{
+		SignalStructure struct = structureOf(signal);
+		ResultCache cache = signal.isVoid() ? null : struct.getResultCache();
+		long generation = 0;
+		int[] failures = null;
+		int failuresBefore = 0;
+		if (cache != null)
+		{
+			List<?> cached = cache.get(varargs);
+			if (cached != null)
+			{
+				return cached;
+			}
+			generation = cache.getGeneration();
+			failures = threadFailures.get();
+			failuresBefore = failures[0];
+		}
 		List returnVal = new ArrayList();
-		if (USE_WORKER_THREADS && signal.isVoid() && linker.get(signal.getSignalName()).getRegisteredSlots().size() > 1)
+		List<Slot> slots = targetsOf(struct, signal, varargs);
+		KeyExtractor partitioner = signal.getPartitioner();
+		if (USE_WORKER_THREADS && signal.isVoid() && partitioner != null)
 		{
-			for (Slot slot : linker.get(signal.getSignalName()).getRegisteredSlots())
+			Object key = partitioner.extractKey(varargs);
+			PartitionedExecutor lanes = getPartitionedExecutor();
+			for (Slot slot : slots)
 			{
-				exec.execute(new SASRunner(slot, varargs));
+				if (slot.getStatistics().isQuarantined())
+				{
+					continue;
+				}
+				if (slot.isInline())
+				{
+					returnVal.add(slot.invoke(varargs));
+				}
+				else
+				{
+					lanes = executePartitioned(lanes, key, new SASRunner(slot, varargs, budgetOf(signal, slot)));
+				}
 			}
 		}
+		else if (USE_WORKER_THREADS && signal.isVoid())
+		{
+			dispatchVoid(signal, slots, varargs, returnVal);
+		}
         else
 		{
-			for (Slot slot : linker.get(signal.getSignalName()).getRegisteredSlots())
+			for (Slot slot : slots)
 			{
+				if (slot.getStatistics().isQuarantined())
+				{
+					continue;
+				}
 				Object o = slot.invoke(varargs);
 				returnVal.add(o);
 			}
+			if (cache != null && failures[0] == failuresBefore)
+			{
+				return cache.put(varargs, returnVal, generation);
+			}
 		}
 		return returnVal;
 	}	
 	
+	/**
+	 * Enables a result cache on a non-void signal, replacing any existing cache. Only use this for pure signals, whose slots always return the same 
+	 * results for equal arguments. The cache is emptied whenever the signal's slots change, or one of them is quarantined or released.
+	 * 
+	 * @param signal	The signal
+	 * @param maxSize	The maximum number of results held, beyond which the least recently used is evicted
+	 * @param ttl		The time to live of each result, or 0 to keep results until evicted or invalidated
+	 * @param unit		The unit of the time to live
+	 * @return	The cache, for reading its statistics
+	 */
+	public static ResultCache enableResultCache(Signal signal, int maxSize, long ttl, TimeUnit unit)
+	{
+		if (signal.isVoid())
+		{
+			throw new IllegalArgumentException("Error: Only non-void signals can cache their results");
+		}
+		ResultCache cache = new ResultCache(maxSize, unit.toNanos(ttl));
+		structureOf(signal).setResultCache(cache);
+		return cache;
+	}
+	
+	/**
+	 * Empties the result cache of a signal, if it has one. Called when one of the signal's slots is quarantined or released, as its results would no
+	 * longer match
+	 * 
+	 * @param signalName	The name of the signal
+	 */
+	public static void invalidateResultCache(String signalName)
+	{
+		SignalStructure struct = signalName == null ? null : linker.get(signalName);
+		ResultCache cache = struct == null ? null : struct.getResultCache();
+		if (cache != null)
+		{
+			cache.invalidate();
+		}
+	}
+	
+	/**
+	 * Removes the result cache from a signal
+	 * 
+	 * @param signal	The signal
+	 */
+	public static void disableResultCache(Signal signal)
+	{
+		structureOf(signal).setResultCache(null);
+	}
+	
+	/**
+	 * Invokes all the slots attached to the invoking signal on the worker pool, returning a future for each. Slots with a time budget (of their own, or 
+	 * from the signal) are cancelled by interrupting them if they run past it, and their futures throw CancellationException.
+	 * 
+	 * @param signal
+	 * @param varargs
+	 * @return	A future for the return value of each slot called
+	 */
+	public static List<Future<Object>> invokeAsync(Signal signal, Object[] varargs)
+	{
+		List<Slot> slots = targetsOf(signal, varargs);
+		List<Future<Object>> futures = new ArrayList<Future<Object>>(slots.size());
+		KeyExtractor partitioner = signal.getPartitioner();
+		Object key = partitioner == null ? null : partitioner.extractKey(varargs);
+		for (Slot slot : slots)
+		{
+			if (slot.getStatistics().isQuarantined())
+			{
+				continue;
+			}
+			SASRunner runner = new SASRunner(slot, varargs, budgetOf(signal, slot));
+			if (partitioner == null)
+			{
+				exec.execute(runner);
+			}
+			else
+			{
+				executePartitioned(getPartitionedExecutor(), key, runner);
+			}
+			futures.add(runner);
+		}
+		return futures;
+	}
+	
+	/**
+	 * Invokes the slots of a signal as one hop of a fused pipeline. No return values are collected, and the result cache is bypassed. Void signals
+	 * dispatch their slots as invoke does, so cheap slots stay on the calling thread (keeping consecutive hops on one thread) while slow or budgeted
+	 * slots go to the threadpool; partitioned signals keep their lanes, so per key ordering holds.
+	 * 
+	 * @param signal	The signal to invoke
+	 * @param varargs	The arguments
+	 * @throws IllegalArgumentException		Thrown if the arguments do not match the signal's parameters
+	 */
+	public static void invokeFused(Signal signal, Object[] varargs) throws IllegalArgumentException
+	{
+		signal.validate(varargs);
+		if (signal.getPartitioner() != null)
+		{
+			invoke(signal, varargs);
+			return;
+		}
+		List<Slot> slots = targetsOf(signal, varargs);
+		if (USE_WORKER_THREADS && signal.isVoid())
+		{
+			dispatchVoid(signal, slots, varargs, null);
+			return;
+		}
+		for (Slot slot : slots)
+		{
+			if (!slot.getStatistics().isQuarantined())
+			{
+				slot.invoke(varargs);
+			}
+		}
+	}
+	
+	/**
+	 * Runs the slots of a void signal, handing each to the worker pool or running it inline as its time budget and measured cost decide
+	 * 
+	 * @param signal		The signal being invoked
+	 * @param slots			The slots to run
+	 * @param varargs		The arguments of the invoke
+	 * @param returnVal		The list to add the return values of inline slots to (this can be null)
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static void dispatchVoid(Signal signal, List<Slot> slots, Object[] varargs, List returnVal)
+	{
+		boolean poolByDefault = slots.size() > 1;
+		boolean adaptive = USE_ADAPTIVE_DISPATCH;
+		long poolThreshold = ADAPTIVE_POOL_THRESHOLD;
+		for (Slot slot : slots)
+		{
+			if (slot.getStatistics().isQuarantined())
+			{
+				continue;
+			}
+			long budget = budgetOf(signal, slot);
+			boolean pooled = !slot.isInline() && (budget > 0 || (adaptive 
+				? slot.getStatistics().choosePooled(poolThreshold, poolThreshold / 2, poolByDefault) 
+				: poolByDefault));
+			if (pooled)
+			{
+				exec.execute(new SASRunner(slot, varargs, budget));
+			}
+			else
+			{
+				long start = System.nanoTime();
+				Object o = slot.invoke(varargs);
+				slot.getStatistics().recordExecution(System.nanoTime() - start);
+				if (returnVal != null)
+				{
+					returnVal.add(o);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Runs a task on the worker pool
+	 * 
+	 * @param task		The task to run
+	 * @param priority	The priority of the task against queued slots (this can be null)
+	 */
+	public static void execute(Runnable task, Integer priority)
+	{
+		exec.execute(new SASRunner(task, priority));
+	}
+	
+	/**
+	 * Reports a slot failure: counts it against the slot and the error code, then passes it to the signal's error handler, or the default handler if the
+	 * signal has none. An exception thrown by the error handler is counted and dropped, so it cannot break the invoke.
+	 * 
+	 * @param slot		The failing slot (this can be null for tasks not tied to a slot)
+	 * @param code		The kind of failure
+	 * @param cause		The underlying exception (this can be null)
+	 * @param detail	Extra detail for the message (this can be null)
+	 */
+	public static void reportFailure(Slot slot, ErrorCode code, Throwable cause, Object detail)
+	{
+		failureCounts.incrementAndGet(code.ordinal());
+		threadFailures.get()[0]++;
+		SlotErrorHandler handler = errorHandler;
+		if (slot != null)
+		{
+			if (code != ErrorCode.QUARANTINED)
+			{
+				slot.getStatistics().recordFailure();
+			}
+			SignalStructure struct = linker.get(slot.getTargetSignal());
+			if (struct != null && struct.getErrorHandler() != null)
+			{
+				handler = struct.getErrorHandler();
+			}
+		}
+		try {
+			handler.onError(new SlotException(code, slot, cause, detail));
+		} catch (RuntimeException e) {
+			failureCounts.incrementAndGet(ErrorCode.SLOT_THREW.ordinal());
+		}
+	}
+	
+	/**
+	 * Sets the default error handler, used for signals without their own. By default, failures are written to stderr, at most once a second per
+	 * error code.
+	 * 
+	 * @param handler	The handler
+	 */
+	public static void setErrorHandler(SlotErrorHandler handler)
+	{
+		if (handler == null)
+		{
+			throw new IllegalArgumentException("Error: The error handler cannot be null");
+		}
+		errorHandler = handler;
+	}
+	
+	/**
+	 * Sets the error handler for a single signal's slots
+	 * 
+	 * @param signal	The signal
+	 * @param handler	The handler, or null to use the default handler
+	 */
+	public static void setErrorHandler(Signal signal, SlotErrorHandler handler)
+	{
+		structureOf(signal).setErrorHandler(handler);
+	}
+	
+	/**
+	 * Gets the number of failures reported with the error code, across every signal
+	 * 
+	 * @param code	The error code
+	 * @return
+	 */
+	public static long getFailureCount(ErrorCode code)
+	{
+		return failureCounts.get(code.ordinal());
+	}
+	
+	/**
+	 * Sets how often the watchdog checks slots against their time budgets. This bounds how far past its budget a slot can run before it is cancelled.
+	 * 
+	 * @param interval	The interval between checks
+	 * @param unit		The unit of the interval
+	 */
+	public static void setWatchdogInterval(long interval, TimeUnit unit)
+	{
+		SlotWatchdog.getInstance().setCheckInterval(interval, unit);
+	}
+	
+	/**
+	 * Sets the number of timeouts after which the watchdog quarantines a slot. Quarantined slots are skipped by every invoke, until released with 
+	 * slot.getStatistics().setQuarantined(false), after which the slot's timeouts are counted afresh.
+	 * 
+	 * @param threshold		The number of timeouts, or 0 to never quarantine (the default)
+	 */
+	public static void setQuarantineThreshold(int threshold)
+	{
+		SlotWatchdog.getInstance().setQuarantineThreshold(threshold);
+	}
+	
+	/**
+	 * Gets the slots currently running past their time budget
+	 * @return
+	 */
+	public static List<Slot> getOverrunningSlots()
+	{
+		return SlotWatchdog.getInstance().getOverrunningSlots();
+	}
+	
+	/**
+	 * Resizes the worker pool. As the pool's queue is unbounded, the pool only grows past the minimum while tasks are handed straight to new threads, 
+	 * so the minimum is the number of workers in practice.
+	 * 
+	 * @param minThreads	The number of threads kept running (defaults to 5)
+	 * @param maxThreads	The most threads the pool may hold (defaults to 10)
+	 */
+	public static synchronized void setWorkerThreads(int minThreads, int maxThreads)
+	{
+		if (minThreads < 1 || maxThreads < minThreads)
+		{
+			throw new IllegalArgumentException("Error: There must be at least one thread, and no more than the maximum");
+		}
+		MIN_THREADS = minThreads;
+		MAX_THREADS = maxThreads;
+		if (exec != null)
+		{
+			if (maxThreads >= exec.getCorePoolSize())
+			{
+				exec.setMaximumPoolSize(maxThreads);
+				exec.setCorePoolSize(minThreads);
+			}
+			else
+			{
+				exec.setCorePoolSize(minThreads);
+				exec.setMaximumPoolSize(maxThreads);
+			}
+			exec.prestartAllCoreThreads();
+		}
+	}
+	
+	/**
+	 * Sets the scheduling weight of a signal on the worker pool. Each signal's pooled slots queue separately, and the workers take from the signals in
+	 * turn, taking up to the weight's number of tasks from a signal on each of its turns. A busy signal therefore cannot hold back the others, and a 
+	 * signal with twice the weight gets twice the share of the workers while both are busy.
+	 * 
+	 * @param signalName	The name of the signal
+	 * @param weight		The weight (defaults to 1)
+	 */
+	public static void setSchedulingWeight(String signalName, int weight)
+	{
+		threadQueue.setWeight(signalName, weight);
+	}
+	
+	/**
+	 * Caps the number of a signal's slots that may run on the worker pool at once. Tasks beyond the cap wait in the signal's queue, leaving the other
+	 * workers to other signals.
+	 * 
+	 * @param signalName	The name of the signal
+	 * @param maxRunning	The cap, or 0 for no cap (the default)
+	 */
+	public static void setMaxConcurrency(String signalName, int maxRunning)
+	{
+		threadQueue.setMaxConcurrency(signalName, maxRunning);
+	}
+	
+	/**
+	 * Gets the number of tasks waiting for the worker pool
+	 * @return
+	 */
+	public static int getQueueDepth()
+	{
+		return threadQueue.size();
+	}
+	
+	/**
+	 * Gets the number of a signal's tasks waiting for the worker pool
+	 * 
+	 * @param signalName	The name of the signal
+	 * @return
+	 */
+	public static int getQueueDepth(String signalName)
+	{
+		return threadQueue.size(signalName);
+	}
+	
+	/**
+	 * Sets the number of partitioned lanes used by signals with a partitioner. If the lanes are already running, they are replaced, and the old lanes
+	 * finish their queued work before stopping. Note that ordering per key is only kept between invokes made on the same set of lanes.
+	 * 
+	 * @param partitions	The number of lanes (defaults to the number of processors)
+	 */
+	public static synchronized void setPartitionCount(int partitions)
+	{
+		if (partitions < 1)
+		{
+			throw new IllegalArgumentException("Error: There must be at least one partition");
+		}
+		PARTITIONS = partitions;
+		PartitionedExecutor old = partitionedExec;
+		if (old != null)
+		{
+			// Published before the old lanes refuse tasks, so an invoke refused by them always finds the new lanes
+			partitionedExec = new PartitionedExecutor(partitions);
+			old.shutdown();
+		}
+	}
+	
+	/**
+	 * Sets the tick and size of the timer wheel used by Signal.invokeAfter and invokeEvery. This must be called before the first delayed emission, 
+	 * as the wheel is started then.
+	 * 
+	 * @param tick			The duration of one tick, which is the accuracy of delayed emissions (defaults to 1ms)
+	 * @param unit			The unit of the tick
+	 * @param wheelSize		The number of buckets in the wheel (defaults to 1024)
+	 * @throws IllegalStateException	Thrown if the wheel has already started
+	 */
+	public static synchronized void setTimerWheel(long tick, TimeUnit unit, int wheelSize) throws IllegalStateException
+	{
+		if (timerWheel != null)
+		{
+			throw new IllegalStateException("Error: The timer wheel has already started");
+		}
+		if (tick <= 0 || wheelSize < 1)
+		{
+			throw new IllegalArgumentException("Error: The tick and wheel size must be positive");
+		}
+		TIMER_TICK = unit.toNanos(tick);
+		TIMER_WHEEL_SIZE = wheelSize;
+	}
+	
+	/**
+	 * Gets the timer wheel holding delayed emissions, starting it on first use
+	 * @return
+	 */
+	public static TimerWheel getTimerWheel()
+	{
+		TimerWheel wheel = timerWheel;
+		if (wheel == null)
+		{
+			synchronized (SASHandler.class)
+			{
+				wheel = timerWheel;
+				if (wheel == null)
+				{
+					wheel = new TimerWheel(TIMER_TICK, TimeUnit.NANOSECONDS, TIMER_WHEEL_SIZE);
+					timerWheel = wheel;
+				}
+			}
+		}
+		return wheel;
+	}
+	
+	/**
+	 * Queues a task on the partitioned lanes. If the lanes read by the caller have since been replaced by setPartitionCount, the task goes to the new
+	 * lanes instead.
+	 * 
+	 * @param lanes		The lanes read by the caller
+	 * @param key		The partition key
+	 * @param task		The task to run
+	 * @return	The lanes the task was queued on
+	 * @throws IllegalStateException	Thrown if the lanes have been shut down by stopHandler
+	 */
+	private static PartitionedExecutor executePartitioned(PartitionedExecutor lanes, Object key, Runnable task) throws IllegalStateException
+	{
+		while (!lanes.tryExecute(key, task))
+		{
+			PartitionedExecutor current = getPartitionedExecutor();
+			if (current == lanes)
+			{
+				throw new IllegalStateException("Error: The partitioned executor has been shut down");
+			}
+			lanes = current;
+		}
+		return lanes;
+	}
+	
+	private static PartitionedExecutor getPartitionedExecutor()
+	{
+		PartitionedExecutor lanes = partitionedExec;
+		if (lanes == null)
+		{
+			synchronized (SASHandler.class)
+			{
+				lanes = partitionedExec;
+				if (lanes == null)
+				{
+					lanes = new PartitionedExecutor(PARTITIONS);
+					partitionedExec = lanes;
+				}
+			}
+		}
+		return lanes;
+	}
+	
+	private static List<Slot> targetsOf(Signal signal, Object[] varargs)
+	{
+		return targetsOf(structureOf(signal), signal, varargs);
+	}
+	
+	private static SignalStructure structureOf(Signal signal) throws IllegalStateException
+	{
+		SignalStructure struct = linker.get(signal.getSignalName());
+		if (struct == null)
+		{
+			throw new IllegalStateException("Error: The signal: " + signal.getSignalName() + " is not registered");
+		}
+		return struct;
+	}
+	
+	private static List<Slot> targetsOf(SignalStructure struct, Signal signal, Object[] varargs)
+	{
+		KeyExtractor keyExtractor = signal.getKeyExtractor();
+		return keyExtractor == null 
+			? struct.getRegisteredSlots() 
+			: struct.getTargets(keyExtractor.extractKey(varargs));
+	}
+	
+	private static long budgetOf(Signal signal, Slot slot)
+	{
+		long budget = slot.getTimeoutNanos();
+		return budget > 0 ? budget : signal.getSlotTimeoutNanos();
+	}
+	
+	/**
+	 * Enables or disables adaptive dispatch of void signals. When disabled, the handler pools every slot of a void signal with more than one slot, 
+	 * and runs the rest inline.
+	 * 
+	 * @param adaptive	True to choose inline or pooled dispatch per slot from its measured cost
+	 */
+	public static void setAdaptiveDispatch(boolean adaptive)
+	{
+		USE_ADAPTIVE_DISPATCH = adaptive;
+	}
+	
+	/**
+	 * Sets the average slot cost above which adaptive dispatch hands a slot to the worker pool. A pooled slot is brought back inline once its
+	 * average falls below half of this value.
+	 * 
+	 * @param nanos		The threshold in nanoseconds
+	 */
+	public static void setAdaptivePoolThreshold(long nanos)
+	{
+		if (nanos < 0)
+		{
+			throw new IllegalArgumentException("Error: The threshold cannot be negative");
+		}
+		ADAPTIVE_POOL_THRESHOLD = nanos;
+	}
+	
+	/**
+	 * Getter for the average slot cost above which adaptive dispatch pools a slot
+	 * @return	The threshold in nanoseconds
+	 */
+	public static long getAdaptivePoolThreshold()
+	{
+		return ADAPTIVE_POOL_THRESHOLD;
+	}
+	
 	/**
 	 * Shuts down the SASHandler, clearing all the lists and stopping the thread pool
 	 * 
@@ -169,6 +899,18 @@ public class SASHandler {
 	public static void stopHandler()
 	{
 		exec.shutdown();
+		if (partitionedExec != null)
+		{
+			partitionedExec.shutdown();
+		}
+		if (timerWheel != null)
+		{
+			timerWheel.shutdown();
+		}
+		for (SignalStructure struct : linker.values())
+		{
+			struct.clear();
+		}
 		linker.clear();		
 	}
 }
@@ -0,0 +1,55 @@
+package slots.and.signals.structure.manager.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import slots.and.signals.exceptions.ErrorCode;
+import slots.and.signals.exceptions.SlotException;
+import slots.and.signals.structure.SlotErrorHandler;
+
+/**
+ * The default error handler. It writes at most one line per error code to stderr in each interval, followed by a count of the failures suppressed since the 
+ * last line, so a burst of failures costs a counter increment each rather than a stack trace each.
+ * @author walfordt
+ *
+ */
+public class RateLimitedErrorReporter implements SlotErrorHandler {
+
+	private final long intervalNanos;
+
+	private final AtomicLong[] nextReport = new AtomicLong[ErrorCode.values().length];
+
+	private final AtomicLong[] suppressed = new AtomicLong[ErrorCode.values().length];
+
+	/**
+	 * Generates a new reporter
+	 *
+	 * @param interval	The minimum time between reports of the same error code
+	 * @param unit		The unit of the interval
+	 */
+	public RateLimitedErrorReporter(long interval, TimeUnit unit)
+	{
+		this.intervalNanos = unit.toNanos(interval);
+		long now = System.nanoTime();
+		for (int i = 0; i < this.nextReport.length; i++)
+		{
+			this.nextReport[i] = new AtomicLong(now);
+			this.suppressed[i] = new AtomicLong();
+		}
+	}
+
+	@Override
+	public void onError(SlotException error)
+	{
+		int code = error.getCode().ordinal();
+		long now = System.nanoTime();
+		long next = this.nextReport[code].get();
+		if (now - next < 0 || !this.nextReport[code].compareAndSet(next, now + this.intervalNanos))
+		{
+			this.suppressed[code].incrementAndGet();
+			return;
+		}
+		long skipped = this.suppressed[code].getAndSet(0);
+		System.err.println(error.getMessage() + (skipped > 0 ? " (" + skipped + " similar failures suppressed)" : ""));
+	}
+}
@@ -0,0 +1,234 @@
+package slots.and.signals.structure.manager.support;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the results of a pure, non-void signal, keyed by its arguments. The cache is bounded, evicting the least recently used entry when full, and entries
+ * can be given a time to live. It is invalidated whenever the signal's slots change, as the results would no longer match.
+ *
+ * Invalidation works by generation: a result computed while the slots changed is not stored, so a slow invoke cannot put back a stale result.
+ * @author walfordt
+ *
+ */
+public class ResultCache {
+
+	private final int maxSize;
+
+	private final long ttlNanos;
+
+	private final LinkedHashMap<ArgumentKey, Entry> entries;
+
+	private volatile long generation = 0;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final AtomicLong expirations = new AtomicLong();
+
+	/**
+	 * Generates a new cache
+	 *
+	 * @param maxSize		The maximum number of results held
+	 * @param ttlNanos		The time to live of each result in nanoseconds, or 0 to keep results until evicted or invalidated
+	 */
+	public ResultCache(int maxSize, long ttlNanos)
+	{
+		if (maxSize < 1)
+		{
+			throw new IllegalArgumentException("Error: The cache must hold at least one result");
+		}
+		if (ttlNanos < 0)
+		{
+			throw new IllegalArgumentException("Error: The time to live cannot be negative");
+		}
+		this.maxSize = maxSize;
+		this.ttlNanos = ttlNanos;
+		this.entries = new LinkedHashMap<ArgumentKey, Entry>(16, 0.75f, true);
+	}
+
+	/**
+	 * Looks up the result for the arguments
+	 *
+	 * @param varargs	The arguments of the invoke
+	 * @return	The cached result, or null if there is none (or it has expired)
+	 */
+	public List<?> get(Object[] varargs)
+	{
+		ArgumentKey key = new ArgumentKey(varargs);
+		synchronized (this.entries)
+		{
+			Entry entry = this.entries.get(key);
+			if (entry != null)
+			{
+				if (this.ttlNanos == 0 || System.nanoTime() - entry.expiresAt < 0)
+				{
+					this.hits.incrementAndGet();
+					return entry.result;
+				}
+				this.entries.remove(key);
+				this.expirations.incrementAndGet();
+			}
+		}
+		this.misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Stores the result for the arguments, unless the cache has been invalidated since the result was computed
+	 *
+	 * @param varargs		The arguments of the invoke. These are copied, so the caller may reuse the array
+	 * @param result		The result of the invoke
+	 * @param generation	The generation read (see getGeneration) before the result was computed
+	 * @return	An unmodifiable view of the result, to return to the caller
+	 */
+	public List<?> put(Object[] varargs, List<?> result, long generation)
+	{
+		List<?> stored = Collections.unmodifiableList(result);
+		ArgumentKey key = new ArgumentKey(varargs == null ? null : varargs.clone());
+		synchronized (this.entries)
+		{
+			if (generation != this.generation)
+			{
+				return stored;
+			}
+			this.entries.put(key, new Entry(stored, System.nanoTime() + this.ttlNanos));
+			if (this.entries.size() > this.maxSize)
+			{
+				Iterator<ArgumentKey> eldest = this.entries.keySet().iterator();
+				eldest.next();
+				eldest.remove();
+				this.evictions.incrementAndGet();
+			}
+		}
+		return stored;
+	}
+
+	/**
+	 * Drops every result, and moves the cache to a new generation
+	 */
+	public void invalidate()
+	{
+		synchronized (this.entries)
+		{
+			this.generation++;
+			this.entries.clear();
+		}
+	}
+
+	/**
+	 * Getter to get the current generation, to read before computing a result to store
+	 * @return
+	 */
+	public long getGeneration()
+	{
+		return this.generation;
+	}
+
+	/**
+	 * Getter to get the number of results held
+	 * @return
+	 */
+	public int size()
+	{
+		synchronized (this.entries)
+		{
+			return this.entries.size();
+		}
+	}
+
+	/**
+	 * Getter to get the number of lookups that found a result
+	 * @return
+	 */
+	public long getHits()
+	{
+		return this.hits.get();
+	}
+
+	/**
+	 * Getter to get the number of lookups that found no result
+	 * @return
+	 */
+	public long getMisses()
+	{
+		return this.misses.get();
+	}
+
+	/**
+	 * Getter to get the number of results evicted to make room
+	 * @return
+	 */
+	public long getEvictions()
+	{
+		return this.evictions.get();
+	}
+
+	/**
+	 * Getter to get the number of results dropped as they had expired
+	 * @return
+	 */
+	public long getExpirations()
+	{
+		return this.expirations.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "size=" + size() + " hits=" + hits.get() + " misses=" + misses.get()
+			+ " evictions=" + evictions.get() + " expirations=" + expirations.get();
+	}
+
+	/**
+	 * A cached result and its expiry time
+	 */
+	private static final class Entry
+	{
+		private final List<?> result;
+
+		private final long expiresAt;
+
+		private Entry(List<?> result, long expiresAt)
+		{
+			this.result = result;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * Wraps an argument array, comparing by content rather than identity
+	 */
+	private static final class ArgumentKey
+	{
+		private final Object[] args;
+
+		private final int hash;
+
+		private ArgumentKey(Object[] args)
+		{
+			this.args = args;
+			this.hash = Arrays.deepHashCode(args);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object other)
+		{
+			return other instanceof ArgumentKey && Arrays.deepEquals(this.args, ((ArgumentKey) other).args);
+		}
+	}
+}
@@ -1,45 +1,257 @@
 package slots.and.signals.structure.manager.support;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
 
 import slots.and.signals.structure.Slot;
+import slots.and.signals.structure.SlotErrorHandler;
+import slots.and.signals.structure.SlotFilter;
 
 /**
- * Generates a signal structure object for holding by the Handler
+ * Generates a signal structure object for holding by the Handler. Alongside the full list of slots, this keeps an index from routing key to slots, so keyed
+ * signals only need to look up the slots for the invoked key rather than calling every slot.
+ *
+ * The slots are held in a snapshot, which is swapped out on every change. Invokes read the current snapshot without locking, and never see a half applied
+ * change. Registering a single slot appends to the slot list in place (the list only grows, so earlier snapshots still see their own length) and
+ * swaps only the index entry the slot is in. Deregistering a single slot copies the slot list, so is linear in the number of slots; deregister slots in
+ * bulk (see SASHandler.beginSlotBatch) where many go at once.
+ * Every change also invalidates the signal's result cache, if it has one.
  * @author walfordt
  *
  */
 public class SignalStructure {
 
 	private final Class<?>[] invokerParameters;
-	
-	private List<Slot> registeredListeners;
-	
+
+	private volatile SlotSnapshot snapshot;
+
+	private IdentityHashMap<Slot, Route> routes;
+
 	private final Class<?> returnParam;
-	
+
+	private volatile SlotErrorHandler errorHandler = null;
+
+	private volatile ResultCache resultCache = null;
+
 	/**
-	 * Generates a new signal structure type 
-	 * 
+	 * Generates a new signal structure type
+	 *
 	 * @param params		The parameters of the signal
 	 * @param arrayList		The list of attached slots
 	 * @param returnParam	The return type
 	 */
-	public SignalStructure(Class<?>[] params, List<Slot> arrayList, Class<?> returnParam) 
+	public SignalStructure(Class<?>[] params, List<Slot> arrayList, Class<?> returnParam)
 	{
 		this.invokerParameters = params;
-		this.registeredListeners = arrayList;
 		this.returnParam = returnParam;
+		rebuild(new ArrayList<Slot>(arrayList));
 	}
 
 	/**
 	 * Getter to get the registered slots
-	 * @return
+	 * @return	An unmodifiable snapshot of the slots
+	 */
+	public List<Slot> getRegisteredSlots()
+	{
+		return this.snapshot.all;
+	}
+
+	/**
+	 * Checks whether any slots are registered. This is a single volatile read, so is cheap enough to guard every emit
+	 * @return	True if at least one slot is registered
+	 */
+	public boolean hasSlots()
+	{
+		return !this.snapshot.all.isEmpty();
+	}
+
+	/**
+	 * Checks whether an invoke with the given routing key would call any slots, without building the list of them
+	 *
+	 * @param key	The routing key of the invoke
+	 * @return	True if at least one slot would be called
+	 */
+	public boolean hasTargets(Object key)
+	{
+		SlotSnapshot current = this.snapshot;
+		if (!current.broadcastSlots.isEmpty() || (key != null && current.keyedSlots.containsKey(key)))
+		{
+			return true;
+		}
+		for (SlotFilter filter : current.filters)
+		{
+			if (filter.accept(key))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes every slot, for when the signal is deregistered
+	 */
+	public synchronized void clear()
+	{
+		rebuild(new ArrayList<Slot>());
+		invalidateResults();
+	}
+
+	/**
+	 * Checks whether a slot is registered with this structure
+	 *
+	 * @param slot	The slot to check
+	 * @return	True if the slot is registered
+	 */
+	public synchronized boolean containsSlot(Slot slot)
+	{
+		return this.routes.containsKey(slot);
+	}
+
+	/**
+	 * Adds a slot to the structure, indexing it by its routing key
+	 *
+	 * @param slot	The slot to add
+	 */
+	public synchronized void addSlot(Slot slot)
+	{
+		if (this.routes.containsKey(slot))
+		{
+			return;
+		}
+		Route route = new Route(slot);
+		this.routes.put(slot, route);
+		SlotSnapshot current = this.snapshot;
+		this.snapshot = place(current, current.all.with(slot), slot, route);
+		invalidateResults();
+	}
+
+	/**
+	 * Removes a slot from the structure, along with its index entry
+	 *
+	 * @param slot	The slot to remove
+	 */
+	public synchronized void removeSlot(Slot slot)
+	{
+		Route route = this.routes.remove(slot);
+		if (route == null)
+		{
+			return;
+		}
+		SlotSnapshot current = this.snapshot;
+		this.snapshot = displace(current, current.all.without(slot), slot, route);
+		invalidateResults();
+	}
+
+	/**
+	 * Moves a slot to the index entry for its current routing key or filter, after the slot's routing has changed
+	 *
+	 * @param slot	The slot whose routing changed
+	 */
+	public synchronized void reindexSlot(Slot slot)
+	{
+		Route previous = this.routes.get(slot);
+		if (previous == null)
+		{
+			return;
+		}
+		Route route = new Route(slot);
+		if (route.sameAs(previous))
+		{
+			return;
+		}
+		this.routes.put(slot, route);
+		// Taken out before being put back, so an invoke racing the reroute may miss the slot, but never calls it twice
+		SlotSnapshot current = this.snapshot;
+		this.snapshot = displace(current, current.all, slot, previous);
+		this.snapshot = place(this.snapshot, current.all, slot, route);
+		invalidateResults();
+	}
+
+	/**
+	 * Applies a set of removals and additions, publishing a single new snapshot. Slots already registered are not added twice, and removals of slots that
+	 * are not registered are ignored. A single change is applied to the index in place; larger sets of changes, or any change alongside a reroute,
+	 * rebuild it.
+	 *
+	 * @param removals		The slots to remove
+	 * @param additions		The slots to add
+	 * @param reindex		Whether the routing of registered slots has changed, so every slot must be indexed again
 	 */
-	public List<Slot> getRegisteredSlots() 
+	public synchronized void applyChanges(Collection<Slot> removals, Collection<Slot> additions, boolean reindex)
 	{
-		return this.registeredListeners;
+		if (!reindex && removals.size() + additions.size() == 1)
+		{
+			if (removals.isEmpty())
+			{
+				addSlot(additions.iterator().next());
+			}
+			else
+			{
+				removeSlot(removals.iterator().next());
+			}
+			return;
+		}
+		IdentityHashMap<Slot, Boolean> removed = new IdentityHashMap<Slot, Boolean>(removals.size());
+		for (Slot slot : removals)
+		{
+			removed.put(slot, Boolean.TRUE);
+		}
+		List<Slot> slots = new ArrayList<Slot>(this.snapshot.all.size() + additions.size());
+		for (Slot slot : this.snapshot.all)
+		{
+			if (!removed.containsKey(slot))
+			{
+				slots.add(slot);
+			}
+		}
+		for (Slot slot : additions)
+		{
+			if (!this.routes.containsKey(slot) || removed.containsKey(slot))
+			{
+				slots.add(slot);
+			}
+		}
+		rebuild(slots);
+		invalidateResults();
 	}
-	
+
+	/**
+	 * Gets the slots to call for an invoke with the given routing key: the unkeyed slots, the slots registered for the key, and the filtered slots that
+	 * accept the key.
+	 *
+	 * @param key	The routing key of the invoke
+	 * @return	The slots to call
+	 */
+	public List<Slot> getTargets(Object key)
+	{
+		SlotSnapshot current = this.snapshot;
+		List<Slot> keyed = key == null ? null : current.keyedSlots.get(key);
+		if (current.broadcastSlots.isEmpty() && current.filteredSlots.isEmpty())
+		{
+			return keyed == null ? Collections.<Slot>emptyList() : keyed;
+		}
+		List<Slot> targets = new ArrayList<Slot>(current.broadcastSlots);
+		if (keyed != null)
+		{
+			targets.addAll(keyed);
+		}
+		for (int i = 0; i < current.filteredSlots.size(); i++)
+		{
+			if (current.filters.get(i).accept(key))
+			{
+				targets.add(current.filteredSlots.get(i));
+			}
+		}
+		return targets;
+	}
+
 	/**
 	 * Getter to get the invoked paramaters
 	 * @return
@@ -48,7 +260,7 @@ public class SignalStructure {
 	{
 		return this.invokerParameters;
 	}
-	
+
 	/**
 	 * Getter to get the return object class
 	 * @return
@@ -58,4 +270,275 @@ public class SignalStructure {
 		return this.returnParam;
 	}
 
+	/**
+	 * Getter to get the error handler for this signal's slots
+	 * @return	The handler, or null to use the handler's default
+	 */
+	public SlotErrorHandler getErrorHandler()
+	{
+		return this.errorHandler;
+	}
+
+	/**
+	 * Setter to set the error handler for this signal's slots
+	 * @param errorHandler	The handler, or null to use the handler's default
+	 */
+	public void setErrorHandler(SlotErrorHandler errorHandler)
+	{
+		this.errorHandler = errorHandler;
+	}
+
+	/**
+	 * Getter to get the result cache of this signal
+	 * @return	The cache, or null if results are not cached
+	 */
+	public ResultCache getResultCache()
+	{
+		return this.resultCache;
+	}
+
+	/**
+	 * Setter to set the result cache of this signal
+	 * @param resultCache	The cache, or null to stop caching results
+	 */
+	public void setResultCache(ResultCache resultCache)
+	{
+		this.resultCache = resultCache;
+	}
+
+	private void invalidateResults()
+	{
+		ResultCache cache = this.resultCache;
+		if (cache != null)
+		{
+			cache.invalidate();
+		}
+	}
+
+	/**
+	 * Replaces the snapshot with one indexed from scratch
+	 * @param slots	The registered slots, in order
+	 */
+	private void rebuild(List<Slot> slots)
+	{
+		IdentityHashMap<Slot, Route> rebuilt = new IdentityHashMap<Slot, Route>(slots.size());
+		List<Slot> broadcast = new ArrayList<Slot>();
+		ConcurrentHashMap<Object, SlotList<Slot>> keyed = new ConcurrentHashMap<Object, SlotList<Slot>>();
+		List<Slot> filtered = new ArrayList<Slot>();
+		List<SlotFilter> filters = new ArrayList<SlotFilter>();
+		for (Slot slot : slots)
+		{
+			Route route = new Route(slot);
+			rebuilt.put(slot, route);
+			if (route.key != null)
+			{
+				SlotList<Slot> bucket = keyed.get(route.key);
+				keyed.put(route.key, bucket == null ? SlotList.of(slot) : bucket.with(slot));
+			}
+			else if (route.filter != null)
+			{
+				filtered.add(slot);
+				filters.add(route.filter);
+			}
+			else
+			{
+				broadcast.add(slot);
+			}
+		}
+		this.routes = rebuilt;
+		this.snapshot = new SlotSnapshot(SlotList.copyOf(slots), SlotList.copyOf(broadcast), keyed, SlotList.copyOf(filtered), SlotList.copyOf(filters));
+	}
+
+	/**
+	 * Builds the snapshot with the slot added to the index entry for its route. A keyed slot only changes its key's bucket, which is swapped in place in
+	 * the shared key index, as an invoke reads a single bucket
+	 */
+	private static SlotSnapshot place(SlotSnapshot current, SlotList<Slot> all, Slot slot, Route route)
+	{
+		if (route.key != null)
+		{
+			SlotList<Slot> bucket = current.keyedSlots.get(route.key);
+			current.keyedSlots.put(route.key, bucket == null ? SlotList.of(slot) : bucket.with(slot));
+			return new SlotSnapshot(all, current.broadcastSlots, current.keyedSlots, current.filteredSlots, current.filters);
+		}
+		if (route.filter != null)
+		{
+			return new SlotSnapshot(all, current.broadcastSlots, current.keyedSlots, current.filteredSlots.with(slot), current.filters.with(route.filter));
+		}
+		return new SlotSnapshot(all, current.broadcastSlots.with(slot), current.keyedSlots, current.filteredSlots, current.filters);
+	}
+
+	/**
+	 * Builds the snapshot with the slot taken out of the index entry for its route
+	 */
+	private static SlotSnapshot displace(SlotSnapshot current, SlotList<Slot> all, Slot slot, Route route)
+	{
+		if (route.key != null)
+		{
+			SlotList<Slot> bucket = current.keyedSlots.get(route.key);
+			if (bucket != null)
+			{
+				if (bucket.size() == 1 && bucket.get(0) == slot)
+				{
+					current.keyedSlots.remove(route.key);
+				}
+				else
+				{
+					current.keyedSlots.put(route.key, bucket.without(slot));
+				}
+			}
+			return new SlotSnapshot(all, current.broadcastSlots, current.keyedSlots, current.filteredSlots, current.filters);
+		}
+		if (route.filter != null)
+		{
+			int index = current.filteredSlots.indexOfSame(slot);
+			if (index < 0)
+			{
+				return new SlotSnapshot(all, current.broadcastSlots, current.keyedSlots, current.filteredSlots, current.filters);
+			}
+			return new SlotSnapshot(all, current.broadcastSlots, current.keyedSlots, current.filteredSlots.without(index), current.filters.without(index));
+		}
+		return new SlotSnapshot(all, current.broadcastSlots.without(slot), current.keyedSlots, current.filteredSlots, current.filters);
+	}
+
+	/**
+	 * Where a slot is indexed: its routing key, its filter, or neither for a broadcast slot
+	 */
+	private static final class Route
+	{
+		private final Object key;
+
+		private final SlotFilter filter;
+
+		private Route(Slot slot)
+		{
+			this.key = slot.getRoutingKey();
+			this.filter = this.key == null ? slot.getRoutingFilter() : null;
+		}
+
+		private boolean sameAs(Route other)
+		{
+			return (this.key == null ? other.key == null : this.key.equals(other.key)) && this.filter == other.filter;
+		}
+	}
+
+	/**
+	 * A view of the registered slots and their routing index. The lists are immutable. The key index is shared between snapshots, with each bucket an
+	 * immutable list replaced whole, so a change to one key does not copy the others
+	 */
+	private static final class SlotSnapshot
+	{
+		private final SlotList<Slot> all;
+
+		private final SlotList<Slot> broadcastSlots;
+
+		private final ConcurrentHashMap<Object, SlotList<Slot>> keyedSlots;
+
+		private final SlotList<Slot> filteredSlots;
+
+		private final SlotList<SlotFilter> filters;
+
+		private SlotSnapshot(SlotList<Slot> all, SlotList<Slot> broadcastSlots, ConcurrentHashMap<Object, SlotList<Slot>> keyedSlots,
+			SlotList<Slot> filteredSlots, SlotList<SlotFilter> filters)
+		{
+			this.all = all;
+			this.broadcastSlots = broadcastSlots;
+			this.keyedSlots = keyedSlots;
+			this.filteredSlots = filteredSlots;
+			this.filters = filters;
+		}
+	}
+
+	/**
+	 * An immutable list that can be appended to without copying. Lists made by appending share an array: each sees only its own length of it, so an
+	 * append can write past the end of the list it was made from, as long as nothing has been appended there yet. Removals copy the array. Appends and
+	 * removals are only made under the structure's lock
+	 */
+	private static final class SlotList<T> extends AbstractList<T> implements RandomAccess
+	{
+		private final Object[] elements;
+
+		private final int[] used;
+
+		private final int size;
+
+		private SlotList(Object[] elements, int[] used, int size)
+		{
+			this.elements = elements;
+			this.used = used;
+			this.size = size;
+		}
+
+		private static <T> SlotList<T> of(T item)
+		{
+			Object[] elements = new Object[4];
+			elements[0] = item;
+			return new SlotList<T>(elements, new int[] { 1 }, 1);
+		}
+
+		private static <T> SlotList<T> copyOf(List<T> items)
+		{
+			int size = items.size();
+			Object[] elements = Arrays.copyOf(items.toArray(), Math.max(4, size + (size >> 1)));
+			return new SlotList<T>(elements, new int[] { size }, size);
+		}
+
+		private SlotList<T> with(T item)
+		{
+			if (this.size == this.used[0] && this.size < this.elements.length)
+			{
+				this.elements[this.size] = item;
+				this.used[0]++;
+				return new SlotList<T>(this.elements, this.used, this.size + 1);
+			}
+			Object[] grown = Arrays.copyOf(this.elements, Math.max(4, this.size * 2));
+			Arrays.fill(grown, this.size, grown.length, null);
+			grown[this.size] = item;
+			return new SlotList<T>(grown, new int[] { this.size + 1 }, this.size + 1);
+		}
+
+		private SlotList<T> without(T item)
+		{
+			int index = indexOfSame(item);
+			return index < 0 ? this : without(index);
+		}
+
+		private SlotList<T> without(int index)
+		{
+			Object[] copy = new Object[Math.max(4, this.size + (this.size >> 1))];
+			System.arraycopy(this.elements, 0, copy, 0, index);
+			System.arraycopy(this.elements, index + 1, copy, index, this.size - index - 1);
+			return new SlotList<T>(copy, new int[] { this.size - 1 }, this.size - 1);
+		}
+
+		private int indexOfSame(Object item)
+		{
+			for (int i = 0; i < this.size; i++)
+			{
+				if (this.elements[i] == item)
+				{
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T get(int index)
+		{
+			if (index < 0 || index >= this.size)
+			{
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+			}
+			return (T) this.elements[index];
+		}
+
+		@Override
+		public int size()
+		{
+			return this.size;
+		}
+	}
+
 }
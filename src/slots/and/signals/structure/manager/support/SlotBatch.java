@@ -0,0 +1,146 @@
+package slots.and.signals.structure.manager.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import slots.and.signals.structure.Slot;
+
+/**
+ * Holds the slot registrations and deregistrations made on one thread between SASHandler.beginSlotBatch and SASHandler.commitSlotBatch. Changes are
+ * collected per signal, and applied together on commit, so each signal publishes a single new slot snapshot however many slots changed.
+ * @author walfordt
+ *
+ */
+public class SlotBatch {
+
+	private final Map<SignalStructure, LinkedHashMap<Slot, Boolean>> pending = new LinkedHashMap<SignalStructure, LinkedHashMap<Slot, Boolean>>();
+
+	private final Set<List<Object>> validatedSignatures = new HashSet<List<Object>>();
+
+	private final Set<SignalStructure> reindexed = new HashSet<SignalStructure>();
+
+	private int depth = 1;
+
+	/**
+	 * Queues a slot to be added to the structure on commit. If the slot was queued for removal earlier in the batch, the latest change wins.
+	 *
+	 * @param struct	The structure of the target signal
+	 * @param slot		The slot to add
+	 */
+	public void add(SignalStructure struct, Slot slot)
+	{
+		changesFor(struct).put(slot, Boolean.TRUE);
+	}
+
+	/**
+	 * Queues a slot to be removed from the structure on commit. If the slot was queued for adding earlier in the batch, the latest change wins.
+	 *
+	 * @param struct	The structure of the target signal
+	 * @param slot		The slot to remove
+	 */
+	public void remove(SignalStructure struct, Slot slot)
+	{
+		changesFor(struct).put(slot, Boolean.FALSE);
+	}
+
+	/**
+	 * Marks the structure as needing its routing index rebuilt on commit
+	 *
+	 * @param struct	The structure of the target signal
+	 */
+	public void reindex(SignalStructure struct)
+	{
+		changesFor(struct);
+		this.reindexed.add(struct);
+	}
+
+	/**
+	 * Checks whether a slot signature has already been validated against the target signal in this batch, and records it if not
+	 *
+	 * @param targetSignal	The name of the target signal
+	 * @param params		The parameters the slot takes
+	 * @param returnType	The return type of the slot
+	 * @return	True if the signature was validated earlier in the batch
+	 */
+	public boolean isValidated(String targetSignal, Class<?>[] params, Object returnType)
+	{
+		return this.validatedSignatures.contains(signature(targetSignal, params, returnType));
+	}
+
+	/**
+	 * Records that a slot signature is compatible with the target signal
+	 *
+	 * @param targetSignal	The name of the target signal
+	 * @param params		The parameters the slot takes
+	 * @param returnType	The return type of the slot
+	 */
+	public void markValidated(String targetSignal, Class<?>[] params, Object returnType)
+	{
+		this.validatedSignatures.add(signature(targetSignal, params, returnType));
+	}
+
+	/**
+	 * Applies the queued changes, publishing one new snapshot per changed signal
+	 */
+	public void apply()
+	{
+		for (Map.Entry<SignalStructure, LinkedHashMap<Slot, Boolean>> entry : this.pending.entrySet())
+		{
+			List<Slot> removals = new ArrayList<Slot>();
+			List<Slot> additions = new ArrayList<Slot>();
+			for (Map.Entry<Slot, Boolean> change : entry.getValue().entrySet())
+			{
+				if (change.getValue())
+				{
+					additions.add(change.getKey());
+				}
+				else
+				{
+					removals.add(change.getKey());
+				}
+			}
+			entry.getKey().applyChanges(removals, additions, this.reindexed.contains(entry.getKey()));
+		}
+		this.pending.clear();
+		this.reindexed.clear();
+		this.validatedSignatures.clear();
+	}
+
+	/**
+	 * Increments the nesting depth, for a batch begun inside another batch
+	 */
+	public void enter()
+	{
+		this.depth++;
+	}
+
+	/**
+	 * Decrements the nesting depth
+	 * @return	True if this was the outermost batch, and the changes should be applied
+	 */
+	public boolean exit()
+	{
+		return --this.depth == 0;
+	}
+
+	private LinkedHashMap<Slot, Boolean> changesFor(SignalStructure struct)
+	{
+		LinkedHashMap<Slot, Boolean> changes = this.pending.get(struct);
+		if (changes == null)
+		{
+			changes = new LinkedHashMap<Slot, Boolean>();
+			this.pending.put(struct, changes);
+		}
+		return changes;
+	}
+
+	private static List<Object> signature(String targetSignal, Class<?>[] params, Object returnType)
+	{
+		return Arrays.<Object>asList(targetSignal, params == null ? null : Arrays.asList(params), returnType);
+	}
+}
@@ -0,0 +1,230 @@
+package slots.and.signals.structure.manager.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import slots.and.signals.structure.Slot;
+import slots.and.signals.structure.manager.SASHandler;
+
+/**
+ * Holds the measured execution cost of a slot, along with the dispatch decisions the handler has made for it. The average is an exponentially weighted
+ * moving average (each new sample counts for 1/8th), so it follows shifts in the workload without being thrown by a single outlier.
+ *
+ * Updates from concurrent invokes are not synchronised, so an occasional sample may be lost. This is fine for a running average, and keeps the hot path cheap.
+ * @author walfordt
+ *
+ */
+public class SlotStatistics {
+
+	private static final int SMOOTHING_SHIFT = 3;
+
+	private volatile long averageNanos = 0;
+
+	private volatile long samples = 0;
+
+	private volatile boolean pooled = false;
+
+	private final AtomicLong inlineDispatches = new AtomicLong();
+
+	private final AtomicLong pooledDispatches = new AtomicLong();
+
+	private final AtomicLong timeouts = new AtomicLong();
+
+	private final AtomicLong timeoutsSinceRelease = new AtomicLong();
+
+	private final AtomicLong failures = new AtomicLong();
+
+	private volatile boolean quarantined = false;
+
+	private final Slot slot;
+
+	/**
+	 * Generates the statistics of a slot
+	 *
+	 * @param slot		The slot being measured
+	 */
+	public SlotStatistics(Slot slot)
+	{
+		this.slot = slot;
+	}
+
+	/**
+	 * Records the time taken by a single execution of the slot
+	 *
+	 * @param nanos		The execution time in nanoseconds
+	 */
+	public void recordExecution(long nanos)
+	{
+		long count = this.samples;
+		if (count == 0)
+		{
+			this.averageNanos = nanos;
+		}
+		else
+		{
+			long avg = this.averageNanos;
+			this.averageNanos = avg + ((nanos - avg) >> SMOOTHING_SHIFT);
+		}
+		this.samples = count + 1;
+	}
+
+	/**
+	 * Decides whether the next execution of this slot should be handed to the worker pool, and records the decision. A slot moves to the pool once its average
+	 * cost rises above the pool threshold, and only moves back inline once it drops below the inline threshold, so slots near the boundary don't flap.
+	 *
+	 * @param poolThreshold		The average cost (in nanoseconds) above which the slot is pooled
+	 * @param inlineThreshold	The average cost (in nanoseconds) below which the slot is run inline
+	 * @param unmeasuredDefault	The decision to use if the slot has not been measured yet
+	 * @return	True if the slot should be run on the worker pool, false if it should be run inline
+	 */
+	public boolean choosePooled(long poolThreshold, long inlineThreshold, boolean unmeasuredDefault)
+	{
+		boolean decision;
+		if (this.samples == 0)
+		{
+			decision = unmeasuredDefault;
+		}
+		else
+		{
+			long avg = this.averageNanos;
+			if (avg > poolThreshold)
+			{
+				decision = true;
+			}
+			else if (avg < inlineThreshold)
+			{
+				decision = false;
+			}
+			else
+			{
+				decision = this.pooled;
+			}
+		}
+		this.pooled = decision;
+		if (decision)
+		{
+			pooledDispatches.incrementAndGet();
+		}
+		else
+		{
+			inlineDispatches.incrementAndGet();
+		}
+		return decision;
+	}
+
+	/**
+	 * Getter to get the running average execution time
+	 * @return	The average in nanoseconds, or 0 if the slot has not been measured
+	 */
+	public long getAverageNanos()
+	{
+		return this.averageNanos;
+	}
+
+	/**
+	 * Getter to get the number of executions measured
+	 * @return
+	 */
+	public long getSamples()
+	{
+		return this.samples;
+	}
+
+	/**
+	 * Getter for the most recent dispatch decision
+	 * @return	True if the slot was last sent to the worker pool, false if it was last run inline
+	 */
+	public boolean isPooled()
+	{
+		return this.pooled;
+	}
+
+	/**
+	 * Getter to get the number of times the slot was run inline
+	 * @return
+	 */
+	public long getInlineDispatches()
+	{
+		return this.inlineDispatches.get();
+	}
+
+	/**
+	 * Getter to get the number of times the slot was sent to the worker pool
+	 * @return
+	 */
+	public long getPooledDispatches()
+	{
+		return this.pooledDispatches.get();
+	}
+
+	/**
+	 * Records that an execution of the slot ran past its time budget
+	 * @return	The number of timeouts recorded since the slot was last released from quarantine (or since it was created), which the watchdog 
+	 * 			quarantines on
+	 */
+	public long recordTimeout()
+	{
+		this.timeouts.incrementAndGet();
+		return this.timeoutsSinceRelease.incrementAndGet();
+	}
+
+	/**
+	 * Getter to get the number of executions that ran past their time budget
+	 * @return
+	 */
+	public long getTimeouts()
+	{
+		return this.timeouts.get();
+	}
+
+	/**
+	 * Records that an execution of the slot failed
+	 */
+	public void recordFailure()
+	{
+		this.failures.incrementAndGet();
+	}
+
+	/**
+	 * Getter to get the number of failed executions, of any kind
+	 * @return
+	 */
+	public long getFailures()
+	{
+		return this.failures.get();
+	}
+
+	/**
+	 * Getter for whether the slot has been quarantined by the watchdog. Quarantined slots are skipped on invoke
+	 * @return
+	 */
+	public boolean isQuarantined()
+	{
+		return this.quarantined;
+	}
+
+	/**
+	 * Setter to quarantine or release the slot. Releasing the slot restarts its count of timeouts towards the quarantine threshold. A change empties the
+	 * result cache of the slot's signal, as its cached results were computed with a different set of slots
+	 * @param quarantined
+	 */
+	public void setQuarantined(boolean quarantined)
+	{
+		if (!quarantined)
+		{
+			this.timeoutsSinceRelease.set(0);
+		}
+		if (this.quarantined != quarantined)
+		{
+			this.quarantined = quarantined;
+			SASHandler.invalidateResultCache(this.slot.getTargetSignal());
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "avg=" + averageNanos + "ns samples=" + samples + " pooled=" + pooled
+			+ " inline=" + inlineDispatches.get() + " pooledCount=" + pooledDispatches.get()
+			+ " timeouts=" + timeouts.get() + " failures=" + failures.get() + " quarantined=" + quarantined;
+	}
+}
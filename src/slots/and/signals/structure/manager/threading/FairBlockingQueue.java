@@ -0,0 +1,440 @@
+package slots.and.signals.structure.manager.threading;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The work queue of the handler's worker pool. Rather than one queue shared by every signal, each signal gets its own sub-queue (still ordered by slot
+ * priority), and the workers take from the sub-queues by deficit round robin: on its turn, a signal may run as many tasks as its weight before the
+ * next signal gets a turn. A signal can also be capped to a number of tasks running at once. A flood on one signal then only ever gets its share of the
+ * workers, and a quiet signal's tasks wait behind at most one turn of each busy signal.
+ *
+ * Tasks that are not tied to a slot share a single default sub-queue.
+ * @author walfordt
+ *
+ */
+public class FairBlockingQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable>
+{
+
+	private static final String DEFAULT_GROUP = "";
+
+	private static final Comparator<Runnable> PRIORITY = new Comparator<Runnable>() {
+		@Override
+		public int compare(Runnable a, Runnable b)
+		{
+			if (a instanceof SASRunner && b instanceof SASRunner)
+			{
+				return ((SASRunner) a).compareTo((SASRunner) b);
+			}
+			return 0;
+		}
+	};
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition available = this.lock.newCondition();
+
+	private final Map<String, SignalQueue> queues = new HashMap<String, SignalQueue>();
+
+	private final ArrayDeque<SignalQueue> active = new ArrayDeque<SignalQueue>();
+
+	private int count = 0;
+
+	/**
+	 * Sets the weight of a signal: the number of its tasks run on each of its turns
+	 *
+	 * @param signalName	The name of the signal
+	 * @param weight		The weight (defaults to 1)
+	 */
+	public void setWeight(String signalName, int weight)
+	{
+		if (weight < 1)
+		{
+			throw new IllegalArgumentException("Error: The weight must be at least 1");
+		}
+		this.lock.lock();
+		try {
+			queueFor(signalName).weight = weight;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Sets the maximum number of a signal's tasks that may run at once
+	 *
+	 * @param signalName	The name of the signal
+	 * @param maxRunning	The cap, or 0 for no cap (the default)
+	 */
+	public void setMaxConcurrency(String signalName, int maxRunning)
+	{
+		if (maxRunning < 0)
+		{
+			throw new IllegalArgumentException("Error: The concurrency cap cannot be negative");
+		}
+		this.lock.lock();
+		try {
+			queueFor(signalName).maxRunning = maxRunning;
+			this.available.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of a signal's tasks waiting in the queue
+	 *
+	 * @param signalName	The name of the signal
+	 * @return
+	 */
+	public int size(String signalName)
+	{
+		this.lock.lock();
+		try {
+			SignalQueue queue = this.queues.get(signalName);
+			return queue == null ? 0 : queue.tasks.size();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Marks a task taken from this queue as finished, freeing its place under its signal's concurrency cap. Called by the pool after each task
+	 *
+	 * @param task	The finished task
+	 */
+	public void release(Runnable task)
+	{
+		if (!(task instanceof SASRunner) || !((SASRunner) task).dequeued)
+		{
+			return;
+		}
+		this.lock.lock();
+		try {
+			SignalQueue queue = this.queues.get(groupOf(task));
+			if (queue != null)
+			{
+				queue.running--;
+				if (queue.maxRunning > 0 && !queue.tasks.isEmpty())
+				{
+					this.available.signal();
+				}
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(Runnable task)
+	{
+		if (task == null)
+		{
+			throw new NullPointerException();
+		}
+		this.lock.lock();
+		try {
+			SignalQueue queue = queueFor(groupOf(task));
+			queue.tasks.add(task);
+			this.count++;
+			if (!queue.active)
+			{
+				queue.active = true;
+				this.active.addLast(queue);
+			}
+			this.available.signal();
+			return true;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(Runnable task)
+	{
+		offer(task);
+	}
+
+	@Override
+	public boolean offer(Runnable task, long timeout, TimeUnit unit)
+	{
+		return offer(task);
+	}
+
+	@Override
+	public Runnable poll()
+	{
+		this.lock.lock();
+		try {
+			return dequeue();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable take() throws InterruptedException
+	{
+		this.lock.lockInterruptibly();
+		try {
+			Runnable task;
+			while ((task = dequeue()) == null)
+			{
+				this.available.await();
+			}
+			return task;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		long nanos = unit.toNanos(timeout);
+		this.lock.lockInterruptibly();
+		try {
+			Runnable task;
+			while ((task = dequeue()) == null)
+			{
+				if (nanos <= 0)
+				{
+					return null;
+				}
+				nanos = this.available.awaitNanos(nanos);
+			}
+			return task;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable peek()
+	{
+		this.lock.lock();
+		try {
+			for (SignalQueue queue : this.active)
+			{
+				if (!queue.tasks.isEmpty())
+				{
+					return queue.tasks.peek();
+				}
+			}
+			return null;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(Object task)
+	{
+		if (!(task instanceof Runnable))
+		{
+			return false;
+		}
+		this.lock.lock();
+		try {
+			SignalQueue queue = this.queues.get(groupOf((Runnable) task));
+			if (queue != null && queue.tasks.remove(task))
+			{
+				this.count--;
+				return true;
+			}
+			return false;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public int size()
+	{
+		this.lock.lock();
+		try {
+			return this.count;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity()
+	{
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public int drainTo(Collection<? super Runnable> target)
+	{
+		return drainTo(target, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super Runnable> target, int maxElements)
+	{
+		this.lock.lock();
+		try {
+			int drained = 0;
+			for (SignalQueue queue : this.queues.values())
+			{
+				while (drained < maxElements && !queue.tasks.isEmpty())
+				{
+					target.add(queue.tasks.poll());
+					this.count--;
+					drained++;
+				}
+			}
+			return drained;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Iterates over a snapshot of the queued tasks. The iterator does not support removal
+	 */
+	@Override
+	public Iterator<Runnable> iterator()
+	{
+		this.lock.lock();
+		try {
+			List<Runnable> snapshot = new ArrayList<Runnable>(this.count);
+			for (SignalQueue queue : this.queues.values())
+			{
+				snapshot.addAll(queue.tasks);
+			}
+			final Iterator<Runnable> it = snapshot.iterator();
+			return new Iterator<Runnable>() {
+				@Override
+				public boolean hasNext()
+				{
+					return it.hasNext();
+				}
+
+				@Override
+				public Runnable next()
+				{
+					return it.next();
+				}
+
+				@Override
+				public void remove()
+				{
+					throw new UnsupportedOperationException("Error: The queue's iterator does not support removal");
+				}
+			};
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Takes the next task by deficit round robin. The signal at the head of the rotation is credited its weight at the start of its turn, and serves one
+	 * task per credit before moving to the back. Signals at their concurrency cap are passed over without losing their credit.
+	 *
+	 * @return	The next task, or null if none can run
+	 */
+	private Runnable dequeue()
+	{
+		int passedOver = 0;
+		while (!this.active.isEmpty() && passedOver < this.active.size())
+		{
+			SignalQueue queue = this.active.peekFirst();
+			if (queue.tasks.isEmpty())
+			{
+				this.active.pollFirst();
+				queue.active = false;
+				queue.deficit = 0;
+				continue;
+			}
+			if (queue.maxRunning > 0 && queue.running >= queue.maxRunning)
+			{
+				this.active.addLast(this.active.pollFirst());
+				passedOver++;
+				continue;
+			}
+			if (queue.deficit <= 0)
+			{
+				queue.deficit = queue.weight;
+			}
+			Runnable task = queue.tasks.poll();
+			this.count--;
+			queue.running++;
+			if (task instanceof SASRunner)
+			{
+				((SASRunner) task).dequeued = true;
+			}
+			if (--queue.deficit == 0 || queue.tasks.isEmpty())
+			{
+				this.active.pollFirst();
+				if (queue.tasks.isEmpty())
+				{
+					queue.active = false;
+					queue.deficit = 0;
+				}
+				else
+				{
+					this.active.addLast(queue);
+				}
+			}
+			return task;
+		}
+		return null;
+	}
+
+	private SignalQueue queueFor(String group)
+	{
+		SignalQueue queue = this.queues.get(group);
+		if (queue == null)
+		{
+			queue = new SignalQueue();
+			this.queues.put(group, queue);
+		}
+		return queue;
+	}
+
+	private static String groupOf(Runnable task)
+	{
+		if (task instanceof SASRunner)
+		{
+			String group = ((SASRunner) task).getGroup();
+			if (group != null)
+			{
+				return group;
+			}
+		}
+		return DEFAULT_GROUP;
+	}
+
+	/**
+	 * The sub-queue and scheduling state of one signal. Only touched under the lock
+	 */
+	private static final class SignalQueue
+	{
+		private final PriorityQueue<Runnable> tasks = new PriorityQueue<Runnable>(11, PRIORITY);
+
+		private int weight = 1;
+
+		private int maxRunning = 0;
+
+		private int running = 0;
+
+		private int deficit = 0;
+
+		private boolean active = false;
+	}
+}
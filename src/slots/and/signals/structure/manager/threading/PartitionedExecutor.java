@@ -0,0 +1,180 @@
+package slots.and.signals.structure.manager.threading;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import slots.and.signals.exceptions.ErrorCode;
+import slots.and.signals.structure.manager.SASHandler;
+
+/**
+ * Runs tasks on a fixed set of single threaded lanes, choosing the lane from a partition key. Every task with the same key runs on the same thread, in the
+ * order it was submitted, so slots see the emissions for one entity in order and on one core. Different keys are spread across the lanes.
+ * @author walfordt
+ *
+ */
+public class PartitionedExecutor
+{
+
+	private final Lane[] lanes;
+
+	private boolean shutdown = false;
+
+	/**
+	 * Held shared while queueing a task and exclusively while shutting down, so no task can be queued behind the lanes' poison
+	 */
+	private final ReentrantReadWriteLock shutdownLock = new ReentrantReadWriteLock();
+
+	/**
+	 * Creates the executor, starting its lane threads
+	 *
+	 * @param partitions	The number of lanes
+	 */
+	public PartitionedExecutor(int partitions)
+	{
+		if (partitions < 1)
+		{
+			throw new IllegalArgumentException("Error: There must be at least one partition");
+		}
+		this.lanes = new Lane[partitions];
+		for (int i = 0; i < partitions; i++)
+		{
+			this.lanes[i] = new Lane();
+			Thread thread = new Thread(this.lanes[i], "SAS-partition-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Queues a task on the lane for the key
+	 *
+	 * @param key		The partition key (this can be null, which always maps to the same lane)
+	 * @param task		The task to run
+	 */
+	public void execute(Object key, Runnable task)
+	{
+		if (!tryExecute(key, task))
+		{
+			throw new IllegalStateException("Error: The partitioned executor has been shut down");
+		}
+	}
+
+	/**
+	 * Queues a task on the lane for the key, unless the executor has been shut down
+	 *
+	 * @param key		The partition key (this can be null, which always maps to the same lane)
+	 * @param task		The task to run
+	 * @return	True if the task was queued, false if the executor has been shut down
+	 */
+	public boolean tryExecute(Object key, Runnable task)
+	{
+		this.shutdownLock.readLock().lock();
+		try {
+			if (this.shutdown)
+			{
+				return false;
+			}
+			this.lanes[laneOf(key)].queue.add(task);
+			return true;
+		} finally {
+			this.shutdownLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of tasks waiting across all the lanes
+	 * @return
+	 */
+	public int getQueueDepth()
+	{
+		int depth = 0;
+		for (Lane lane : this.lanes)
+		{
+			depth += lane.queue.size();
+		}
+		return depth;
+	}
+
+	/**
+	 * Getter to get the number of lanes
+	 * @return
+	 */
+	public int getPartitions()
+	{
+		return this.lanes.length;
+	}
+
+	/**
+	 * Stops accepting tasks. The lanes finish the tasks already queued, then their threads stop
+	 */
+	public void shutdown()
+	{
+		this.shutdownLock.writeLock().lock();
+		try {
+			if (this.shutdown)
+			{
+				return;
+			}
+			this.shutdown = true;
+			for (Lane lane : this.lanes)
+			{
+				lane.queue.add(Lane.POISON);
+			}
+		} finally {
+			this.shutdownLock.writeLock().unlock();
+		}
+	}
+
+	private int laneOf(Object key)
+	{
+		if (key == null)
+		{
+			return 0;
+		}
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return (h & 0x7fffffff) % this.lanes.length;
+	}
+
+	/**
+	 * A single thread and its queue
+	 */
+	private static final class Lane implements Runnable
+	{
+		private static final Runnable POISON = new Runnable() {
+			@Override
+			public void run()
+			{
+			}
+		};
+
+		private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+
+		@Override
+		public void run()
+		{
+			while (true)
+			{
+				Runnable task;
+				try {
+					task = this.queue.take();
+				} catch (InterruptedException e) {
+					// A late interrupt from the watchdog cancelling the previous task
+					continue;
+				}
+				if (task == POISON)
+				{
+					return;
+				}
+				try {
+					task.run();
+				} catch (Throwable e) {
+					// Reported rather than left to end the thread, as every key on the lane would then wait forever
+					SASHandler.reportFailure(task instanceof SASRunner ? ((SASRunner) task).getTarget() : null, ErrorCode.SLOT_THREW, e, null);
+				}
+				Thread.interrupted();
+			}
+		}
+	}
+}
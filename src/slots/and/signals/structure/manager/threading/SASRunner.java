@@ -1,40 +1,121 @@
 package slots.and.signals.structure.manager.threading;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import slots.and.signals.exceptions.ErrorCode;
 import slots.and.signals.structure.Slot;
+import slots.and.signals.structure.manager.SASHandler;
 
 /**
  * Class to wrap invoke methods in for running in parallel. Holds priorities.
+ *
+ * As this is a future, the caller can wait on the slot's return value, or cancel it. If given a time budget, the runner is watched while it runs, and is
+ * cancelled (interrupting the slot) if it runs past the budget.
  * @author walfordt
  *
  */
-public class SASRunner implements Runnable, Comparable<SASRunner> 
+public class SASRunner extends FutureTask<Object> implements Comparable<SASRunner>
 {
 
 	private final Integer priorityLevel;
-	
+
 	private final Slot target;
-	
-	private final Object[] args;
-	
+
+	private final long timeoutNanos;
+
+	private final String group;
+
+	private volatile long startNanos;
+
+	/**
+	 * Set by the fair queue when it hands the runner to a worker, so the worker's place under the signal's concurrency cap is only released if taken
+	 */
+	boolean dequeued = false;
+
 	/**
 	 * Constructor which sets the priority level
-	 * @param priorityLevel		Priority of the request
 	 * @param target			The targeted slot
 	 * @param args				The passed arguments
 	 */
 	public SASRunner(Slot target, Object[] args)
 	{
+		this(target, args, 0);
+	}
+
+	/**
+	 * Constructor which sets the priority level and time budget
+	 * @param target			The targeted slot
+	 * @param args				The passed arguments
+	 * @param timeoutNanos		The time budget of the slot in nanoseconds, or 0 for no limit
+	 */
+	public SASRunner(Slot target, Object[] args, long timeoutNanos)
+	{
+		super(new SlotCall(target, args));
 		this.target = target;
 		this.priorityLevel = target.getPriority();
-		this.args = args;
+		this.timeoutNanos = timeoutNanos;
+		this.group = target.getTargetSignal();
 	}
-	
+
+	/**
+	 * Constructor for a task that is not tied to a slot, such as the continuation of a signal pipeline after an async boundary
+	 * @param task				The task to run
+	 * @param priorityLevel		Priority of the task (this can be null)
+	 */
+	public SASRunner(Runnable task, Integer priorityLevel)
+	{
+		super(task, null);
+		this.target = null;
+		this.priorityLevel = priorityLevel;
+		this.timeoutNanos = 0;
+		this.group = null;
+	}
+
 	/**
 	 * Method to run in the worker pool
 	 */
 	@Override
 	public void run() {
-		target.invoke(args);
+		long start = System.nanoTime();
+		this.startNanos = start;
+		SlotWatchdog watchdog = null;
+		if (timeoutNanos > 0)
+		{
+			watchdog = SlotWatchdog.getInstance();
+			watchdog.watch(this);
+		}
+		try {
+			super.run();
+		} finally {
+			if (watchdog != null)
+			{
+				watchdog.unWatch(this);
+			}
+			if (target != null)
+			{
+				target.getStatistics().recordExecution(System.nanoTime() - start);
+			}
+		}
+	}
+
+	/**
+	 * Reports failures of the task through the handler's error channel, as they would otherwise be held silently in the future
+	 */
+	@Override
+	protected void done()
+	{
+		if (!isCancelled())
+		{
+			try {
+				get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				SASHandler.reportFailure(target, ErrorCode.SLOT_THREW, e.getCause(), null);
+			}
+		}
 	}
 
 	/**
@@ -45,27 +126,84 @@ public class SASRunner implements Runnable, Comparable<SASRunner>
 	{
 		return this.priorityLevel;
 	}
-	
+
+	/**
+	 * Getter to get the targeted slot
+	 * @return	The slot, or null if this runner is not tied to a slot
+	 */
+	public Slot getTarget()
+	{
+		return this.target;
+	}
+
+	/**
+	 * Getter to get the time budget
+	 * @return	The budget in nanoseconds, or 0 for no limit
+	 */
+	public long getTimeoutNanos()
+	{
+		return this.timeoutNanos;
+	}
+
+	/**
+	 * Getter to get the name of the signal the runner is scheduled under
+	 * @return	The name of the targeted slot's signal, or null if this runner is not tied to a slot
+	 */
+	public String getGroup()
+	{
+		return this.group;
+	}
+
+	/**
+	 * Getter to get the time the runner started running
+	 * @return	The start time, as given by System.nanoTime()
+	 */
+	public long getStartNanos()
+	{
+		return this.startNanos;
+	}
+
 	/**
 	 * Comparing target for priority queue
 	 * @param compareTarget	The object to compare to
-	 * @return	Returns 1 if the priority level is lower (higher priority), -1 if the priority level is higher, and 0 in all other cases
+	 * @return	Returns 1 if the priority level is lower (higher priority), -1 if the priority level is higher, and 0 in all other cases. A null priority counts as 0
 	 */
 	@Override
-	public int compareTo(SASRunner compareTarget) 
+	public int compareTo(SASRunner compareTarget)
 	{
-		if (this.priorityLevel != null || compareTarget.getPriority() != null)
+		int thisLevel = this.priorityLevel == null ? 0 : this.priorityLevel;
+		int otherLevel = compareTarget.getPriority() == null ? 0 : compareTarget.getPriority();
+		if (thisLevel > otherLevel)
 		{
-			if (this.priorityLevel > ((SASRunner)compareTarget).getPriority())
-			{
-				return -1;
-			}
-			else if (this.priorityLevel < ((SASRunner)compareTarget).getPriority())
-			{
-				return 1;
-			}
+			return -1;
+		}
+		else if (thisLevel < otherLevel)
+		{
+			return 1;
 		}
 		return 0;
 	}
 
+	/**
+	 * The call made by the runner, held separately so it can be handed to the future before the runner is built
+	 */
+	private static final class SlotCall implements Callable<Object>
+	{
+		private final Slot target;
+
+		private final Object[] args;
+
+		private SlotCall(Slot target, Object[] args)
+		{
+			this.target = target;
+			this.args = args;
+		}
+
+		@Override
+		public Object call()
+		{
+			return target.invoke(args);
+		}
+	}
+
 }
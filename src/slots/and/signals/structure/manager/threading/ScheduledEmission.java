@@ -0,0 +1,97 @@
+package slots.and.signals.structure.manager.threading;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import slots.and.signals.structure.Signal;
+
+/**
+ * A delayed or periodic emission of a signal, held in the timer wheel until it is due. Also acts as the handle for cancelling it.
+ * @author walfordt
+ *
+ */
+public class ScheduledEmission
+{
+
+	static final int WAITING = 0;
+	static final int CANCELLED = 1;
+	static final int EXPIRED = 2;
+
+	private final TimerWheel wheel;
+
+	final Signal signal;
+
+	final Object[] args;
+
+	final long periodNanos;
+
+	long deadline;
+
+	long remainingRounds;
+
+	ScheduledEmission next;
+
+	ScheduledEmission prev;
+
+	TimerWheel.Bucket bucket;
+
+	final AtomicInteger state = new AtomicInteger(WAITING);
+
+	ScheduledEmission(TimerWheel wheel, Signal signal, Object[] args, long deadline, long periodNanos)
+	{
+		this.wheel = wheel;
+		this.signal = signal;
+		this.args = args;
+		this.deadline = deadline;
+		this.periodNanos = periodNanos;
+	}
+
+	/**
+	 * Cancels the emission. For a periodic emission, this stops any further emissions
+	 * @return	True if the emission was cancelled, false if it had already been emitted (for a one off emission) or cancelled
+	 */
+	public boolean cancel()
+	{
+		if (!this.state.compareAndSet(WAITING, CANCELLED))
+		{
+			return false;
+		}
+		this.wheel.cancelled(this);
+		return true;
+	}
+
+	/**
+	 * Getter for whether the emission has been cancelled
+	 * @return
+	 */
+	public boolean isCancelled()
+	{
+		return this.state.get() == CANCELLED;
+	}
+
+	/**
+	 * Getter for whether a one off emission has been emitted
+	 * @return
+	 */
+	public boolean isExpired()
+	{
+		return this.state.get() == EXPIRED;
+	}
+
+	/**
+	 * Getter for whether the emission repeats
+	 * @return
+	 */
+	public boolean isPeriodic()
+	{
+		return this.periodNanos > 0;
+	}
+
+	/**
+	 * Getter to get the signal to emit on
+	 * @return
+	 */
+	public Signal getSignal()
+	{
+		return this.signal;
+	}
+}
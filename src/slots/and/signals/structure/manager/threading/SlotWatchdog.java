@@ -0,0 +1,165 @@
+package slots.and.signals.structure.manager.threading;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import slots.and.signals.exceptions.ErrorCode;
+import slots.and.signals.structure.Slot;
+import slots.and.signals.structure.manager.SASHandler;
+import slots.and.signals.structure.manager.support.SlotStatistics;
+
+/**
+ * Watches the runners that have a time budget while they run. On each check, any runner past its budget is cancelled (interrupting the slot), and the
+ * overrun is reported through the handler's error channel and counted against the slot. If a quarantine threshold is set, slots that reach that many 
+ * timeouts are quarantined, and skipped by the handler until released.
+ *
+ * A slot that ignores the interrupt keeps its worker thread, so the watchdog keeps such runners listed in getOverrunningSlots until they finish.
+ * @author walfordt
+ *
+ */
+public class SlotWatchdog implements Runnable
+{
+
+	private static volatile SlotWatchdog instance;
+
+	private final ConcurrentHashMap<SASRunner, Boolean> running = new ConcurrentHashMap<SASRunner, Boolean>();
+
+	private volatile long checkInterval = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private volatile int quarantineThreshold = 0;
+
+	private SlotWatchdog()
+	{
+	}
+
+	/**
+	 * Gets the watchdog, starting its thread on first use
+	 * @return
+	 */
+	public static SlotWatchdog getInstance()
+	{
+		SlotWatchdog watchdog = instance;
+		if (watchdog == null)
+		{
+			synchronized (SlotWatchdog.class)
+			{
+				watchdog = instance;
+				if (watchdog == null)
+				{
+					watchdog = new SlotWatchdog();
+					Thread thread = new Thread(watchdog, "SAS-slot-watchdog");
+					thread.setDaemon(true);
+					thread.start();
+					instance = watchdog;
+				}
+			}
+		}
+		return watchdog;
+	}
+
+	/**
+	 * Starts watching a runner
+	 * @param runner	The runner, which must have a time budget
+	 */
+	public void watch(SASRunner runner)
+	{
+		this.running.put(runner, Boolean.TRUE);
+	}
+
+	/**
+	 * Stops watching a runner, once it has finished
+	 * @param runner	The runner
+	 */
+	public void unWatch(SASRunner runner)
+	{
+		this.running.remove(runner);
+	}
+
+	/**
+	 * Sets how often the watchdog checks the running slots. This bounds how far past its budget a slot can run before it is cancelled
+	 *
+	 * @param interval	The interval between checks
+	 * @param unit		The unit of the interval
+	 */
+	public void setCheckInterval(long interval, TimeUnit unit)
+	{
+		if (interval <= 0)
+		{
+			throw new IllegalArgumentException("Error: The check interval must be positive");
+		}
+		this.checkInterval = unit.toNanos(interval);
+	}
+
+	/**
+	 * Sets the number of timeouts after which a slot is quarantined
+	 *
+	 * @param threshold		The number of timeouts, or 0 to never quarantine
+	 */
+	public void setQuarantineThreshold(int threshold)
+	{
+		if (threshold < 0)
+		{
+			throw new IllegalArgumentException("Error: The quarantine threshold cannot be negative");
+		}
+		this.quarantineThreshold = threshold;
+	}
+
+	/**
+	 * Gets the slots currently running past their budget, including those already cancelled that have not yet given up their thread
+	 * @return
+	 */
+	public List<Slot> getOverrunningSlots()
+	{
+		long now = System.nanoTime();
+		List<Slot> overrunning = new ArrayList<Slot>();
+		for (SASRunner runner : this.running.keySet())
+		{
+			if (now - runner.getStartNanos() > runner.getTimeoutNanos())
+			{
+				overrunning.add(runner.getTarget());
+			}
+		}
+		return overrunning;
+	}
+
+	/**
+	 * The watchdog loop
+	 */
+	@Override
+	public void run()
+	{
+		while (true)
+		{
+			try {
+				TimeUnit.NANOSECONDS.sleep(this.checkInterval);
+			} catch (InterruptedException e) {
+				return;
+			}
+			long now = System.nanoTime();
+			for (SASRunner runner : this.running.keySet())
+			{
+				long elapsed = now - runner.getStartNanos();
+				if (elapsed > runner.getTimeoutNanos() && runner.cancel(true))
+				{
+					reportTimeout(runner, elapsed);
+				}
+			}
+		}
+	}
+
+	private void reportTimeout(SASRunner runner, long elapsed)
+	{
+		Slot slot = runner.getTarget();
+		SlotStatistics stats = slot.getStatistics();
+		long timeouts = stats.recordTimeout();
+		SASHandler.reportFailure(slot, ErrorCode.TIMEOUT, null, elapsed);
+		int threshold = this.quarantineThreshold;
+		if (threshold > 0 && timeouts >= threshold && !stats.isQuarantined())
+		{
+			stats.setQuarantined(true);
+			SASHandler.reportFailure(slot, ErrorCode.QUARANTINED, null, timeouts);
+		}
+	}
+}
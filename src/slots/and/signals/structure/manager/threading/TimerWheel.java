@@ -0,0 +1,374 @@
+package slots.and.signals.structure.manager.threading;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import slots.and.signals.exceptions.ErrorCode;
+import slots.and.signals.structure.Signal;
+import slots.and.signals.structure.manager.SASHandler;
+
+/**
+ * A hashed timer wheel for delayed and periodic emissions. The wheel is a ring of buckets, one per tick, each holding a linked list of the emissions due in
+ * that tick of some future turn of the wheel. Scheduling and cancelling are O(1): both just queue the emission for the wheel's thread, which links it into
+ * (or out of) its bucket on the next tick. Each tick, the wheel thread walks one bucket, handing what is due to the worker pool, where it goes through
+ * the signal's normal invoke.
+ *
+ * Emissions are accurate to one tick. As the wheel's thread never runs slots itself, a slow slot (or one that must run inline, such as a blocking
+ * subscriber) only delays its own emission, not every timer due after it. Periodic emissions keep a fixed rate, so a slot slower than its period has 
+ * emissions overlap on the pool.
+ * @author walfordt
+ *
+ */
+public class TimerWheel implements Runnable
+{
+
+	private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+	private final long tickNanos;
+
+	private final Bucket[] wheel;
+
+	private final int mask;
+
+	private final long startTime;
+
+	private final Queue<ScheduledEmission> pending = new ConcurrentLinkedQueue<ScheduledEmission>();
+
+	private final Queue<ScheduledEmission> cancellations = new ConcurrentLinkedQueue<ScheduledEmission>();
+
+	private final Queue<Signal> signalCancellations = new ConcurrentLinkedQueue<Signal>();
+
+	private final AtomicLong scheduled = new AtomicLong();
+
+	private volatile boolean shutdown = false;
+
+	private long tick = 0;
+
+	/**
+	 * Creates the wheel, starting its thread
+	 *
+	 * @param tick			The duration of one tick
+	 * @param unit			The unit of the tick
+	 * @param wheelSize		The number of buckets, rounded up to a power of two
+	 */
+	public TimerWheel(long tick, TimeUnit unit, int wheelSize)
+	{
+		if (tick <= 0)
+		{
+			throw new IllegalArgumentException("Error: The tick must be positive");
+		}
+		if (wheelSize < 1 || wheelSize > (1 << 30))
+		{
+			throw new IllegalArgumentException("Error: The wheel size must be between 1 and 2^30");
+		}
+		int size = 1;
+		while (size < wheelSize)
+		{
+			size <<= 1;
+		}
+		this.tickNanos = unit.toNanos(tick);
+		this.wheel = new Bucket[size];
+		for (int i = 0; i < size; i++)
+		{
+			this.wheel[i] = new Bucket();
+		}
+		this.mask = size - 1;
+		this.startTime = System.nanoTime();
+		Thread thread = new Thread(this, "SAS-timer-wheel");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Schedules an emission
+	 *
+	 * @param signal		The signal to emit on
+	 * @param args			The arguments to emit
+	 * @param delayNanos	The delay before the (first) emission
+	 * @param periodNanos	The period between emissions, or 0 to emit once
+	 * @return	The handle to cancel the emission with
+	 */
+	public ScheduledEmission schedule(Signal signal, Object[] args, long delayNanos, long periodNanos)
+	{
+		if (this.shutdown)
+		{
+			throw new IllegalStateException("Error: The timer wheel has been shut down");
+		}
+		if (delayNanos < 0 || periodNanos < 0)
+		{
+			throw new IllegalArgumentException("Error: The delay and period cannot be negative");
+		}
+		ScheduledEmission emission = new ScheduledEmission(this, signal, args,
+			System.nanoTime() - this.startTime + delayNanos, Math.max(periodNanos, periodNanos > 0 ? this.tickNanos : 0));
+		this.scheduled.incrementAndGet();
+		this.pending.add(emission);
+		return emission;
+	}
+
+	/**
+	 * Gets the number of emissions waiting in the wheel, including periodic emissions
+	 * @return
+	 */
+	public long getScheduledCount()
+	{
+		return this.scheduled.get();
+	}
+
+	/**
+	 * Stops the wheel. Emissions still waiting are dropped
+	 */
+	public void shutdown()
+	{
+		this.shutdown = true;
+	}
+
+	/**
+	 * Cancels every emission of a signal, such as when the signal is unregistered. The emissions are found by walking the wheel on its next tick, so this
+	 * costs one pass over the waiting emissions
+	 *
+	 * @param signal	The signal whose emissions to cancel
+	 */
+	public void cancel(Signal signal)
+	{
+		this.signalCancellations.add(signal);
+	}
+
+	/**
+	 * Queues a cancelled emission for removal from its bucket
+	 * @param emission
+	 */
+	void cancelled(ScheduledEmission emission)
+	{
+		this.cancellations.add(emission);
+	}
+
+	/**
+	 * The wheel loop
+	 */
+	@Override
+	public void run()
+	{
+		while (!this.shutdown)
+		{
+			long deadline = waitForNextTick();
+			if (deadline < 0)
+			{
+				return;
+			}
+			removeCancelled();
+			transferPending();
+			cancelSignals();
+			this.wheel[(int) (this.tick & this.mask)].expire(deadline);
+			this.tick++;
+		}
+	}
+
+	private long waitForNextTick()
+	{
+		long deadline = this.tickNanos * (this.tick + 1);
+		while (true)
+		{
+			long now = System.nanoTime() - this.startTime;
+			long sleep = deadline - now;
+			if (sleep <= 0)
+			{
+				return now;
+			}
+			try {
+				TimeUnit.NANOSECONDS.sleep(sleep);
+			} catch (InterruptedException e) {
+				if (this.shutdown)
+				{
+					return -1;
+				}
+			}
+		}
+	}
+
+	private void removeCancelled()
+	{
+		ScheduledEmission emission;
+		while ((emission = this.cancellations.poll()) != null)
+		{
+			if (emission.bucket != null)
+			{
+				emission.bucket.remove(emission);
+				this.scheduled.decrementAndGet();
+			}
+		}
+	}
+
+	private void cancelSignals()
+	{
+		Signal signal;
+		while ((signal = this.signalCancellations.poll()) != null)
+		{
+			for (Bucket bucket : this.wheel)
+			{
+				ScheduledEmission emission = bucket.head;
+				while (emission != null)
+				{
+					ScheduledEmission next = emission.next;
+					if (emission.signal == signal && emission.state.compareAndSet(ScheduledEmission.WAITING, ScheduledEmission.CANCELLED))
+					{
+						bucket.remove(emission);
+						this.scheduled.decrementAndGet();
+					}
+					emission = next;
+				}
+			}
+		}
+	}
+
+	private void transferPending()
+	{
+		for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++)
+		{
+			ScheduledEmission emission = this.pending.poll();
+			if (emission == null)
+			{
+				return;
+			}
+			if (emission.state.get() == ScheduledEmission.CANCELLED)
+			{
+				this.scheduled.decrementAndGet();
+				continue;
+			}
+			long calculated = emission.deadline / this.tickNanos;
+			emission.remainingRounds = (calculated - this.tick) / this.wheel.length;
+			long ticks = Math.max(calculated, this.tick);
+			this.wheel[(int) (ticks & this.mask)].add(emission);
+		}
+	}
+
+	private void emit(final ScheduledEmission emission)
+	{
+		if (emission.periodNanos == 0)
+		{
+			this.scheduled.decrementAndGet();
+			if (!emission.state.compareAndSet(ScheduledEmission.WAITING, ScheduledEmission.EXPIRED))
+			{
+				return;
+			}
+		}
+		else if (emission.state.get() != ScheduledEmission.WAITING)
+		{
+			this.scheduled.decrementAndGet();
+			return;
+		}
+		if (emission.periodNanos > 0)
+		{
+			emission.deadline += emission.periodNanos;
+			this.pending.add(emission);
+		}
+		try {
+			SASHandler.execute(new Runnable() {
+				@Override
+				public void run()
+				{
+					deliver(emission);
+				}
+			}, null);
+		} catch (RuntimeException e) {
+			// Such as the worker pool having been shut down
+			SASHandler.reportFailure(null, ErrorCode.SLOT_THREW, e, null);
+			emission.cancel();
+		}
+	}
+
+	/**
+	 * Invokes a due emission, on the worker pool
+	 */
+	private static void deliver(ScheduledEmission emission)
+	{
+		try {
+			emission.signal.invoke(emission.args);
+		} catch (RuntimeException e) {
+			SASHandler.reportFailure(null, ErrorCode.SLOT_THREW, e, null);
+			// A failing periodic emission (such as on an unregistered signal) would fail again every period, so it is stopped instead
+			emission.cancel();
+		}
+	}
+
+	/**
+	 * One bucket of the wheel, as a doubly linked list so cancelled emissions can be unlinked in O(1). Only touched by the wheel's thread
+	 */
+	final class Bucket
+	{
+		private ScheduledEmission head;
+
+		private ScheduledEmission tail;
+
+		void add(ScheduledEmission emission)
+		{
+			emission.bucket = this;
+			if (this.head == null)
+			{
+				this.head = emission;
+				this.tail = emission;
+			}
+			else
+			{
+				this.tail.next = emission;
+				emission.prev = this.tail;
+				this.tail = emission;
+			}
+		}
+
+		void expire(long deadline)
+		{
+			ScheduledEmission emission = this.head;
+			while (emission != null)
+			{
+				ScheduledEmission next = emission.next;
+				if (emission.remainingRounds <= 0)
+				{
+					remove(emission);
+					if (emission.deadline <= deadline)
+					{
+						emit(emission);
+					}
+					else
+					{
+						// Placed in the wrong bucket, which should not happen; re-queue rather than lose it
+						TimerWheel.this.pending.add(emission);
+					}
+				}
+				else
+				{
+					emission.remainingRounds--;
+				}
+				emission = next;
+			}
+		}
+
+		void remove(ScheduledEmission emission)
+		{
+			if (emission.bucket != this)
+			{
+				return;
+			}
+			if (emission.prev != null)
+			{
+				emission.prev.next = emission.next;
+			}
+			else
+			{
+				this.head = emission.next;
+			}
+			if (emission.next != null)
+			{
+				emission.next.prev = emission.prev;
+			}
+			else
+			{
+				this.tail = emission.prev;
+			}
+			emission.prev = null;
+			emission.next = null;
+			emission.bucket = null;
+		}
+	}
+}
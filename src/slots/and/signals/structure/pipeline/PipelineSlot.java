@@ -0,0 +1,37 @@
+package slots.and.signals.structure.pipeline;
+
+import slots.and.signals.exceptions.InvalidReturnTypeException;
+import slots.and.signals.structure.Signal;
+import slots.and.signals.structure.Slot;
+
+/**
+ * The slot connecting a pipeline's source stage to its source signal. It always runs on the emitting thread, so the first stages are fused with the emit.
+ * @author walfordt
+ */
+public class PipelineSlot extends Slot
+{
+	
+	/**
+	 * Generates a new pipeline slot
+	 * 
+	 * @param source		The source stage of the pipeline
+	 * @param signal		The signal to attach to. This must be a void signal
+	 * @throws IllegalArgumentException 	Thrown if the arguments do not match the signal's arguments
+	 * @throws InvalidReturnTypeException 	Thrown if the signal is not void
+	 */
+	public PipelineSlot(PipelineStage source, Signal signal) throws IllegalArgumentException, InvalidReturnTypeException
+	{
+		super(source, signal.getSignalName(), signal.getParams(), (Class<?>) null);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Pipeline slots always run inline, so the pipeline's stages run on the emitting thread.
+	 */
+	@Override
+	public boolean isInline()
+	{
+		return true;
+	}
+}
@@ -0,0 +1,233 @@
+package slots.and.signals.structure.pipeline;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import slots.and.signals.exceptions.ErrorCode;
+import slots.and.signals.structure.Signal;
+import slots.and.signals.structure.SlotMethod;
+import slots.and.signals.structure.manager.SASHandler;
+
+/**
+ * A node in a signal pipeline. Each stage passes the emissions it lets through to its target signals and to its child stages; calling map, filter or async
+ * more than once on the same stage fans the emission out to each branch.
+ * 
+ * Stages run on the thread that reached them, and emit to their target signals through SASHandler.invokeFused, so a chain of signals and stages runs on one
+ * thread without revalidating arguments or collecting results. Only an async stage moves the rest of its branch onto the worker pool.
+ * @author walfordt
+ */
+public class PipelineStage implements SlotMethod 
+{
+	
+	private enum Type 
+	{
+		SOURCE, MAP, FILTER, ASYNC
+	}
+	
+	private final Type type;
+	
+	private final StageFunction function;
+	
+	private final StageFilter filter;
+	
+	private static final int MAX_DEPTH = 64;
+	
+	/**
+	 * Per thread: the number of hops into target signals the current emission has made (carried across async boundaries), and whether it has been 
+	 * stopped for passing MAX_DEPTH
+	 */
+	private static final ThreadLocal<int[]> hops = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue()
+		{
+			return new int[2];
+		}
+	};
+	
+	private final List<PipelineStage> children = new CopyOnWriteArrayList<PipelineStage>();
+	
+	private final List<Signal> targets = new CopyOnWriteArrayList<Signal>();
+	
+	private PipelineStage(Type type, StageFunction function, StageFilter filter)
+	{
+		this.type = type;
+		this.function = function;
+		this.filter = filter;
+	}
+	
+	/**
+	 * Creates the source stage of a pipeline
+	 * @return
+	 */
+	static PipelineStage source()
+	{
+		return new PipelineStage(Type.SOURCE, null, null);
+	}
+	
+	/**
+	 * Adds a map stage downstream of this one
+	 * 
+	 * @param function	The transformation to apply
+	 * @return	The new stage
+	 */
+	public PipelineStage map(StageFunction function)
+	{
+		return addChild(new PipelineStage(Type.MAP, function, null));
+	}
+	
+	/**
+	 * Adds a filter stage downstream of this one
+	 * 
+	 * @param filter	The filter to apply
+	 * @return	The new stage
+	 */
+	public PipelineStage filter(StageFilter filter)
+	{
+		return addChild(new PipelineStage(Type.FILTER, null, filter));
+	}
+	
+	/**
+	 * Adds an async boundary downstream of this one. Everything after the boundary runs as a single task on the worker pool, rather than on the 
+	 * emitting thread
+	 * 
+	 * @return	The new stage
+	 */
+	public PipelineStage async()
+	{
+		return addChild(new PipelineStage(Type.ASYNC, null, null));
+	}
+	
+	/**
+	 * Emits everything passing this stage on the target signals. The arguments are checked against each target's parameters on every emission, and a
+	 * mismatch is reported as a failure of the pipeline's slot. A target that leads back to this stage's source, through this or any other connected 
+	 * pipeline, is rejected when the pipeline connects; loops made afterwards are stopped once an emission passes through 64 signals, counting hops on
+	 * both sides of async stages.
+	 * 
+	 * @param signals	The signals to emit on
+	 * @return	This stage, so further stages can branch from it
+	 */
+	public PipelineStage to(Signal... signals)
+	{
+		for (Signal signal : signals)
+		{
+			this.targets.add(signal);
+		}
+		return this;
+	}
+	
+	/**
+	 * Called by the pipeline's slot on the source signal
+	 * 
+	 * @param varargs	The arguments passed by the signal
+	 * @return	Always null
+	 */
+	@Override
+	public Object invoke(Object[] varargs)
+	{
+		push(varargs);
+		return null;
+	}
+	
+	private void push(Object[] varargs)
+	{
+		switch (this.type)
+		{
+			case MAP:
+				varargs = this.function.apply(varargs);
+				if (varargs == null)
+				{
+					return;
+				}
+				break;
+			case FILTER:
+				if (!this.filter.accept(varargs))
+				{
+					return;
+				}
+				break;
+			case ASYNC:
+				final Object[] args = varargs;
+				// The task carries the emission's depth, so a loop through the boundary is still stopped on the pool thread
+				final int depth = hops.get()[0];
+				SASHandler.execute(new Runnable() {
+					@Override
+					public void run()
+					{
+						int[] state = hops.get();
+						int outer = state[0];
+						state[0] = depth;
+						try {
+							emit(args);
+						} finally {
+							state[0] = outer;
+							if (outer == 0)
+							{
+								state[1] = 0;
+							}
+						}
+					}
+				}, null);
+				return;
+			default:
+				break;
+		}
+		emit(varargs);
+	}
+	
+	private void emit(Object[] varargs)
+	{
+		if (!this.targets.isEmpty())
+		{
+			int[] state = hops.get();
+			if (state[1] != 0)
+			{
+				return;
+			}
+			if (state[0] >= MAX_DEPTH)
+			{
+				// Stops the whole emission, rather than just this hop, so a loop that fans out cannot keep branching
+				state[1] = 1;
+				SASHandler.reportFailure(null, ErrorCode.SLOT_THREW, new IllegalStateException("Error: A pipeline emission passed through " 
+					+ MAX_DEPTH + " signals, so likely loops back on itself"), this.targets.get(0).getSignalName());
+				return;
+			}
+			state[0]++;
+			try {
+				for (Signal signal : this.targets)
+				{
+					SASHandler.invokeFused(signal, varargs);
+				}
+			} finally {
+				if (--state[0] == 0)
+				{
+					state[1] = 0;
+				}
+			}
+		}
+		for (PipelineStage child : this.children)
+		{
+			child.push(varargs);
+		}
+	}
+	
+	/**
+	 * Collects the signals this stage and the stages after it emit on
+	 * 
+	 * @param into	The set to add the signals to
+	 */
+	void collectTargets(Set<Signal> into)
+	{
+		into.addAll(this.targets);
+		for (PipelineStage child : this.children)
+		{
+			child.collectTargets(into);
+		}
+	}
+	
+	private PipelineStage addChild(PipelineStage child)
+	{
+		this.children.add(child);
+		return child;
+	}
+}
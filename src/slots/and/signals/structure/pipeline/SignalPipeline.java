@@ -0,0 +1,180 @@
+package slots.and.signals.structure.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import slots.and.signals.exceptions.InvalidReturnTypeException;
+import slots.and.signals.structure.Signal;
+import slots.and.signals.structure.Slot;
+
+/**
+ * Declares a graph of map, filter and fan out stages between signals. Rather than a slot on signal A re-emitting on signal B (revalidating, collecting results, 
+ * and possibly hopping threads on every hop), the pipeline runs its stages and the slots of the signals it emits on as one fused chain on the emitting 
+ * thread, only moving to the worker pool at declared async stages.
+ * 
+ * <pre>
+ * SignalPipeline pipeline = new SignalPipeline();
+ * pipeline.from(quotes).filter(isValid).map(enrich).to(enriched);
+ * pipeline.from(enriched).async().map(toAuditRecord).to(audit);
+ * pipeline.connect();
+ * </pre>
+ * 
+ * Source signals must be void. As with other slots, the pipeline MUST be disconnected before it is discarded.
+ * @author walfordt
+ */
+public class SignalPipeline 
+{
+	
+	private final Map<Signal, PipelineStage> sources = new LinkedHashMap<Signal, PipelineStage>();
+	
+	private final List<Slot> connected = new ArrayList<Slot>();
+	
+	/**
+	 * The signals each source of a connected pipeline emits on, as found at connect, so later pipelines can check for loops through them
+	 */
+	private static final Map<SignalPipeline, Map<Signal, Set<Signal>>> connectedEdges = new IdentityHashMap<SignalPipeline, Map<Signal, Set<Signal>>>();
+	
+	/**
+	 * Gets the source stage for a signal, creating it on first use. Declaring several branches from the same signal fans each emission out to all of them
+	 * 
+	 * @param signal	The source signal
+	 * @return	The source stage
+	 */
+	public synchronized PipelineStage from(Signal signal)
+	{
+		if (!signal.isVoid())
+		{
+			throw new IllegalArgumentException("Error: Only void signals can be pipeline sources");
+		}
+		PipelineStage source = this.sources.get(signal);
+		if (source == null)
+		{
+			source = PipelineStage.source();
+			this.sources.put(signal, source);
+		}
+		return source;
+	}
+	
+	/**
+	 * Attaches the pipeline to its source signals. Stages can still be added after connecting, and take effect on the next emission
+	 * 
+	 * @throws InvalidReturnTypeException	Thrown if a source signal is not void
+	 * @throws IllegalStateException		Thrown if the pipeline is already connected, or emits back onto one of its own sources (directly, or through 
+	 * 										other connected pipelines)
+	 */
+	public synchronized void connect() throws InvalidReturnTypeException, IllegalStateException
+	{
+		if (!this.connected.isEmpty())
+		{
+			throw new IllegalStateException("Error: The pipeline is already connected");
+		}
+		Map<Signal, Set<Signal>> edges = new IdentityHashMap<Signal, Set<Signal>>();
+		for (Map.Entry<Signal, PipelineStage> entry : this.sources.entrySet())
+		{
+			Set<Signal> targets = Collections.newSetFromMap(new IdentityHashMap<Signal, Boolean>());
+			entry.getValue().collectTargets(targets);
+			edges.put(entry.getKey(), targets);
+		}
+		synchronized (connectedEdges)
+		{
+			Map<Signal, Set<Signal>> combined = new IdentityHashMap<Signal, Set<Signal>>();
+			addEdges(combined, edges);
+			for (Map<Signal, Set<Signal>> other : connectedEdges.values())
+			{
+				addEdges(combined, other);
+			}
+			Set<Signal> done = Collections.newSetFromMap(new IdentityHashMap<Signal, Boolean>());
+			for (Signal source : this.sources.keySet())
+			{
+				Signal looped = findLoop(source, combined, Collections.newSetFromMap(new IdentityHashMap<Signal, Boolean>()), done);
+				if (looped != null)
+				{
+					throw new IllegalStateException("Error: The pipeline emits back onto its source signal: " + looped.getSignalName());
+				}
+			}
+			connectedEdges.put(this, edges);
+		}
+		boolean attached = false;
+		try {
+			for (Map.Entry<Signal, PipelineStage> entry : this.sources.entrySet())
+			{
+				this.connected.add(new PipelineSlot(entry.getValue(), entry.getKey()));
+			}
+			attached = true;
+		} finally {
+			if (!attached)
+			{
+				// Undoes the slots attached so far, and frees the pipeline's edges for loop checks
+				disconnect();
+			}
+		}
+	}
+	
+	private static void addEdges(Map<Signal, Set<Signal>> into, Map<Signal, Set<Signal>> edges)
+	{
+		for (Map.Entry<Signal, Set<Signal>> entry : edges.entrySet())
+		{
+			Set<Signal> targets = into.get(entry.getKey());
+			if (targets == null)
+			{
+				targets = Collections.newSetFromMap(new IdentityHashMap<Signal, Boolean>());
+				into.put(entry.getKey(), targets);
+			}
+			targets.addAll(entry.getValue());
+		}
+	}
+	
+	/**
+	 * Searches depth first for a path from the signal back onto a signal already on the path
+	 * 
+	 * @param signal	The signal to search from
+	 * @param edges		The signals each source signal emits on, across every connected pipeline
+	 * @param path		The signals on the current path
+	 * @param done		The signals already searched without finding a loop
+	 * @return	The signal the loop returns to, or null if there is none
+	 */
+	private static Signal findLoop(Signal signal, Map<Signal, Set<Signal>> edges, Set<Signal> path, Set<Signal> done)
+	{
+		if (path.contains(signal))
+		{
+			return signal;
+		}
+		if (done.contains(signal) || !edges.containsKey(signal))
+		{
+			return null;
+		}
+		path.add(signal);
+		for (Signal target : edges.get(signal))
+		{
+			Signal looped = findLoop(target, edges, path, done);
+			if (looped != null)
+			{
+				return looped;
+			}
+		}
+		path.remove(signal);
+		done.add(signal);
+		return null;
+	}
+	
+	/**
+	 * Detaches the pipeline from its source signals
+	 */
+	public synchronized void disconnect()
+	{
+		for (Slot slot : this.connected)
+		{
+			slot.deregisterSlot();
+		}
+		this.connected.clear();
+		synchronized (connectedEdges)
+		{
+			connectedEdges.remove(this);
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package slots.and.signals.structure.pipeline;
+
+/**
+ * Interface for a filter stage of a signal pipeline.
+ * @author walfordt
+ */
+public interface StageFilter 
+{
+	/**
+	 * Called by the pipeline for each emission reaching the stage, this decides whether the emission continues downstream.
+	 * 
+	 * @param varargs	The arguments reaching the stage
+	 * @return	True to pass the emission on
+	 */
+	public boolean accept(Object[] varargs);
+}
@@ -0,0 +1,17 @@
+package slots.and.signals.structure.pipeline;
+
+/**
+ * Interface for a map stage of a signal pipeline.
+ * @author walfordt
+ */
+public interface StageFunction 
+{
+	/**
+	 * Called by the pipeline for each emission reaching the stage, this transforms the arguments for the stages and signals downstream. As the input 
+	 * may be shared with other branches of the pipeline, it should not be modified.
+	 * 
+	 * @param varargs	The arguments reaching the stage
+	 * @return	The arguments to pass downstream, or null to stop the emission here
+	 */
+	public Object[] apply(Object[] varargs);
+}
@@ -0,0 +1,167 @@
+package slots.and.signals.tools;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds, for reading off percentiles. Values are counted in log-linear buckets: exact below 128ns, and above that each
+ * power of two is split into 64 buckets, so any value is known to within 1/64 (about 1.6%). Recording is lock free, so many threads can record at once.
+ * @author walfordt
+ *
+ */
+public class LatencyHistogram
+{
+
+	private static final int SUB_BUCKET_BITS = 6;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+
+	private static final int BUCKETS = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final AtomicLong total = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a latency
+	 * @param nanos		The latency in nanoseconds. Negative values count as 0
+	 */
+	public void record(long nanos)
+	{
+		long value = Math.max(nanos, 0);
+		this.counts.incrementAndGet(indexOf(value));
+		this.total.incrementAndGet();
+		long current;
+		while (value > (current = this.max.get()))
+		{
+			if (this.max.compareAndSet(current, value))
+			{
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Moves everything recorded so far into a new histogram, leaving this one empty. Values recorded while this runs end up in one or the other
+	 * @return	The histogram of the drained values
+	 */
+	public LatencyHistogram drain()
+	{
+		LatencyHistogram drained = new LatencyHistogram();
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			long bucket = this.counts.getAndSet(i, 0);
+			if (bucket != 0)
+			{
+				drained.counts.set(i, bucket);
+				count += bucket;
+			}
+		}
+		this.total.addAndGet(-count);
+		drained.total.set(count);
+		drained.max.set(this.max.getAndSet(0));
+		return drained;
+	}
+
+	/**
+	 * Adds the values of another histogram to this one
+	 * @param other	The histogram to add
+	 */
+	public void add(LatencyHistogram other)
+	{
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			long bucket = other.counts.get(i);
+			if (bucket != 0)
+			{
+				this.counts.addAndGet(i, bucket);
+			}
+		}
+		this.total.addAndGet(other.total.get());
+		long otherMax = other.max.get();
+		long current;
+		while (otherMax > (current = this.max.get()))
+		{
+			if (this.max.compareAndSet(current, otherMax))
+			{
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Getter to get the number of values recorded
+	 * @return
+	 */
+	public long getCount()
+	{
+		return this.total.get();
+	}
+
+	/**
+	 * Getter to get the largest value recorded
+	 * @return	The largest value in nanoseconds, exact rather than bucketed
+	 */
+	public long getMax()
+	{
+		return this.max.get();
+	}
+
+	/**
+	 * Gets the value at or below which the given percentage of the recorded values fall
+	 *
+	 * @param percentile	The percentile, from 0 to 100
+	 * @return	The upper bound of the bucket holding the percentile in nanoseconds (capped at the largest value), or 0 if nothing has been recorded
+	 */
+	public long getValueAtPercentile(double percentile)
+	{
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			count += this.counts.get(i);
+		}
+		if (count == 0)
+		{
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += this.counts.get(i);
+			if (seen >= rank)
+			{
+				return Math.min(highestValueOf(i), this.max.get());
+			}
+		}
+		return this.max.get();
+	}
+
+	private static int indexOf(long value)
+	{
+		if (value < LINEAR_LIMIT)
+		{
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+	}
+
+	private static long highestValueOf(int index)
+	{
+		if (index < LINEAR_LIMIT)
+		{
+			return index;
+		}
+		int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+		long mantissa = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+		int shift = exponent - SUB_BUCKET_BITS;
+		return ((mantissa + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,707 @@
+package slots.and.signals.tools;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import slots.and.signals.exceptions.ErrorCode;
+import slots.and.signals.structure.Signal;
+import slots.and.signals.structure.Slot;
+import slots.and.signals.structure.SlotMethod;
+import slots.and.signals.structure.SynchroSlot;
+import slots.and.signals.structure.manager.SASHandler;
+
+/**
+ * A load generator and soak test for the SASHandler, run from the command line. It registers a set of signals with a mix of reflective slots,
+ * SynchroSlots and SlotMethod slots, emits on them at a fixed rate from several threads, and optionally registers and deregisters slots while it runs.
+ * Every interval it prints the throughput, the delivery latency percentiles, the worker pool's queue depth, and the GC and allocation since the last
+ * interval; a summary over the whole run (less the warmup) is printed at the end.
+ *
+ * The load is open loop: each emitter works to a fixed schedule, and latency is measured from when an emission was due rather than when it was made.
+ * An emitter held up by a slow invoke therefore catches up afterwards, and the delay counts against every emission it held back, rather than being
+ * hidden by the emitter slowing down (coordinated omission).
+ *
+ * Options are given as --name=value:
+ * <pre>
+ * --signals=8        void signals, whose slots may run on the worker pool
+ * --returning=1      signals returning a value, whose slots run inline on the emitter
+ * --slots=4          slots per signal
+ * --mix=1:1:2        weights of reflective Slot : SynchroSlot : SlotMethod slots
+ * --rate=20000       emissions per second, over all emitters
+ * --emitters=2       emitting threads
+ * --work=5           microseconds of busy work done by each slot
+ * --churn=10         slot registrations per second, each replacing an earlier churned slot once there are --slots of them
+ * --threads=5:10     minimum and maximum worker pool threads
+ * --adaptive=true    whether adaptive dispatch runs cheap slots inline
+ * --duration=60      seconds to run for
+ * --warmup=5         seconds left out of the summary
+ * --report=5         seconds between reports
+ * </pre>
+ * @author walfordt
+ *
+ */
+public class LoadGenerator
+{
+
+	private static final String VOID_SIGNAL = "load-void-";
+
+	private static final String RETURNING_SIGNAL = "load-returning-";
+
+	private static final Class<?>[] PARAMETERS = new Class<?>[] { Long.class };
+
+	private int voidSignals = 8;
+
+	private int returningSignals = 1;
+
+	private int slotsPerSignal = 4;
+
+	private int[] mix = new int[] { 1, 1, 2 };
+
+	private double rate = 20000;
+
+	private int emitters = 2;
+
+	private long workNanos = TimeUnit.MICROSECONDS.toNanos(5);
+
+	private double churnRate = 10;
+
+	private int minThreads = 5;
+
+	private int maxThreads = 10;
+
+	private boolean adaptive = true;
+
+	private long durationNanos = TimeUnit.SECONDS.toNanos(60);
+
+	private long warmupNanos = TimeUnit.SECONDS.toNanos(5);
+
+	private long reportNanos = TimeUnit.SECONDS.toNanos(5);
+
+	private final List<Signal> signals = new ArrayList<Signal>();
+
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	private final LatencyHistogram summary = new LatencyHistogram();
+
+	private final AtomicLong emitted = new AtomicLong();
+
+	private final AtomicLong delivered = new AtomicLong();
+
+	private final AtomicLong registrations = new AtomicLong();
+
+	private final AtomicLong slotCount = new AtomicLong();
+
+	private volatile boolean running = true;
+
+	private long startTime;
+
+	/**
+	 * Runs the load generator
+	 * @param args	The options, as --name=value
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		String usage = "Usage: java " + LoadGenerator.class.getName() + " [--signals=8] [--returning=1] [--slots=4] [--mix=1:1:2] "
+			+ "[--rate=20000] [--emitters=2] [--work=5] [--churn=10] [--threads=5:10] [--adaptive=true] [--duration=60] [--warmup=5] [--report=5]";
+		if (args.length == 1 && args[0].equals("--help"))
+		{
+			System.out.println(usage);
+			return;
+		}
+		LoadGenerator generator = new LoadGenerator();
+		try {
+			generator.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(usage);
+			System.exit(1);
+		}
+		generator.run();
+	}
+
+	/**
+	 * Reads the options
+	 * @param args	The options, as --name=value
+	 * @throws IllegalArgumentException	Thrown if an option is unknown or its value is invalid
+	 */
+	public void parse(String[] args) throws IllegalArgumentException
+	{
+		for (String arg : args)
+		{
+			int split = arg.indexOf('=');
+			if (!arg.startsWith("--") || split < 0)
+			{
+				throw new IllegalArgumentException("Error: Options must be given as --name=value, not " + arg);
+			}
+			String name = arg.substring(2, split);
+			String value = arg.substring(split + 1);
+			try {
+				if (name.equals("signals"))
+				{
+					this.voidSignals = atLeast(name, Integer.parseInt(value), 0);
+				}
+				else if (name.equals("returning"))
+				{
+					this.returningSignals = atLeast(name, Integer.parseInt(value), 0);
+				}
+				else if (name.equals("slots"))
+				{
+					this.slotsPerSignal = atLeast(name, Integer.parseInt(value), 1);
+				}
+				else if (name.equals("mix"))
+				{
+					String[] weights = value.split(":");
+					if (weights.length != 3)
+					{
+						throw new IllegalArgumentException("Error: The mix must be three weights, as slot:synchro:method");
+					}
+					for (int i = 0; i < 3; i++)
+					{
+						this.mix[i] = atLeast(name, Integer.parseInt(weights[i]), 0);
+					}
+					if (this.mix[0] + this.mix[1] + this.mix[2] == 0)
+					{
+						throw new IllegalArgumentException("Error: At least one weight of the mix must be positive");
+					}
+				}
+				else if (name.equals("rate"))
+				{
+					this.rate = Double.parseDouble(value);
+					if (!(this.rate > 0))
+					{
+						throw new IllegalArgumentException("Error: The rate must be positive");
+					}
+				}
+				else if (name.equals("emitters"))
+				{
+					this.emitters = atLeast(name, Integer.parseInt(value), 1);
+				}
+				else if (name.equals("work"))
+				{
+					this.workNanos = TimeUnit.MICROSECONDS.toNanos(atLeast(name, Integer.parseInt(value), 0));
+				}
+				else if (name.equals("churn"))
+				{
+					this.churnRate = Double.parseDouble(value);
+					if (this.churnRate < 0)
+					{
+						throw new IllegalArgumentException("Error: The churn rate cannot be negative");
+					}
+				}
+				else if (name.equals("threads"))
+				{
+					String[] sizes = value.split(":");
+					this.minThreads = atLeast(name, Integer.parseInt(sizes[0]), 1);
+					this.maxThreads = sizes.length > 1 ? atLeast(name, Integer.parseInt(sizes[1]), this.minThreads) : this.minThreads;
+				}
+				else if (name.equals("adaptive"))
+				{
+					this.adaptive = Boolean.parseBoolean(value);
+				}
+				else if (name.equals("duration"))
+				{
+					this.durationNanos = TimeUnit.SECONDS.toNanos(atLeast(name, Integer.parseInt(value), 1));
+				}
+				else if (name.equals("warmup"))
+				{
+					this.warmupNanos = TimeUnit.SECONDS.toNanos(atLeast(name, Integer.parseInt(value), 0));
+				}
+				else if (name.equals("report"))
+				{
+					this.reportNanos = TimeUnit.SECONDS.toNanos(atLeast(name, Integer.parseInt(value), 1));
+				}
+				else
+				{
+					throw new IllegalArgumentException("Error: Unknown option " + name);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Error: Invalid value for " + name + ": " + value);
+			}
+		}
+		if (this.voidSignals + this.returningSignals == 0)
+		{
+			throw new IllegalArgumentException("Error: There must be at least one signal");
+		}
+	}
+
+	/**
+	 * Runs the load for the set duration, printing the reports, then stops the handler
+	 */
+	public void run() throws Exception
+	{
+		SASHandler.setAdaptiveDispatch(this.adaptive);
+		SASHandler.setWorkerThreads(this.minThreads, this.maxThreads);
+		setUp();
+		System.out.println(String.format("%d void and %d returning signals, %d slots, %.0f emissions/s from %d emitters, %dus work, %.1f churn/s, %d:%d threads",
+			this.voidSignals, this.returningSignals, this.slotCount.get(), this.rate, this.emitters, TimeUnit.NANOSECONDS.toMicros(this.workNanos),
+			this.churnRate, this.minThreads, this.maxThreads));
+		System.out.println(String.format("%8s %10s %10s %9s %9s %9s %9s %9s %9s %7s %5s %7s %9s %8s %8s",
+			"time(s)", "emitted/s", "deliver/s", "p50(us)", "p90", "p99", "p99.9", "p99.99", "max", "queue", "gcs", "gc(ms)", "alloc/s", "heap(MB)", "failures"));
+
+		this.startTime = System.nanoTime();
+		List<Thread> threads = new ArrayList<Thread>();
+		long period = (long) (this.emitters * TimeUnit.SECONDS.toNanos(1) / this.rate);
+		for (int i = 0; i < this.emitters; i++)
+		{
+			threads.add(start(new Emitter(this.startTime + i * period / this.emitters, Math.max(period, 1)), "SAS-load-emitter-" + i));
+		}
+		if (this.churnRate > 0)
+		{
+			threads.add(start(new Churner((long) (TimeUnit.SECONDS.toNanos(1) / this.churnRate)), "SAS-load-churn"));
+		}
+
+		Sample last = new Sample();
+		long nextReport = this.startTime + this.reportNanos;
+		long end = this.startTime + this.durationNanos;
+		long warmupEnd = this.startTime + this.warmupNanos;
+		while (nextReport - end <= 0)
+		{
+			LatencyHistogram warmup = null;
+			if (warmupEnd - (nextReport - this.reportNanos) > 0 && warmupEnd - nextReport < 0)
+			{
+				// The warmup ends part way through this interval, so the latencies recorded up to then are taken out of the summary
+				sleepUntil(warmupEnd);
+				warmup = this.latencies.drain();
+			}
+			sleepUntil(nextReport);
+			last = report(last, nextReport - warmupEnd > 0, warmup);
+			nextReport += this.reportNanos;
+		}
+
+		this.running = false;
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (SASHandler.getQueueDepth() > 0 && System.nanoTime() - drainDeadline < 0)
+		{
+			Thread.sleep(10);
+		}
+		if (this.latencies.getCount() > 0)
+		{
+			report(last, true, null);
+		}
+		printSummary();
+		SASHandler.stopHandler();
+	}
+
+	/**
+	 * Registers the signals and their slots
+	 */
+	private void setUp() throws Exception
+	{
+		Receiver receiver = new Receiver(this);
+		int created = 0;
+		SASHandler.beginSlotBatch();
+		try {
+			for (int i = 0; i < this.voidSignals + this.returningSignals; i++)
+			{
+				boolean returning = i >= this.voidSignals;
+				String name = returning ? RETURNING_SIGNAL + (i - this.voidSignals) : VOID_SIGNAL + i;
+				this.signals.add(new Signal(name, PARAMETERS, returning ? Long.class : (Class<?>) null));
+				for (int j = 0; j < this.slotsPerSignal; j++)
+				{
+					createSlot(receiver, name, returning, created++);
+				}
+			}
+		} finally {
+			SASHandler.commitSlotBatch();
+		}
+	}
+
+	/**
+	 * Creates a slot on the signal, of the kind picked by the mix
+	 *
+	 * @param receiver		The target of reflective slots
+	 * @param signalName	The name of the signal
+	 * @param returning		Whether the signal returns a value
+	 * @param sequence		The number of slots created before this one, to spread the kinds evenly
+	 * @return	The registered slot
+	 */
+	private Slot createSlot(Receiver receiver, String signalName, boolean returning, long sequence) throws Exception
+	{
+		Class<?> returnType = returning ? Long.class : null;
+		String method = returning ? "reply" : "receive";
+		long position = sequence % (this.mix[0] + this.mix[1] + this.mix[2]);
+		Slot slot;
+		if (position < this.mix[0])
+		{
+			slot = new Slot(receiver, method, signalName, PARAMETERS, returnType);
+		}
+		else if (position < this.mix[0] + this.mix[1])
+		{
+			slot = new SynchroSlot(receiver, method, signalName, PARAMETERS, returnType);
+		}
+		else
+		{
+			slot = new Slot(new LoadSlotMethod(this, returning), signalName, PARAMETERS, returnType);
+		}
+		this.slotCount.incrementAndGet();
+		return slot;
+	}
+
+	/**
+	 * Called by every slot: does the set amount of work, then records the latency from when the emission was due
+	 * @param due	The time the emission was due, as given by System.nanoTime()
+	 */
+	void deliver(Long due)
+	{
+		if (this.workNanos > 0)
+		{
+			long end = System.nanoTime() + this.workNanos;
+			while (System.nanoTime() - end < 0)
+			{
+				Thread.onSpinWait();
+			}
+		}
+		this.latencies.record(System.nanoTime() - due);
+		this.delivered.incrementAndGet();
+	}
+
+	/**
+	 * Prints the report for the interval since the last sample
+	 *
+	 * @param last		The sample taken at the last report
+	 * @param counted	Whether the interval ends after the warmup, and so is counted in the summary
+	 * @param warmup	The latencies of the interval recorded before the warmup ended, reported but not counted (this can be null)
+	 * @return	The sample taken for this report
+	 */
+	private Sample report(Sample last, boolean counted, LatencyHistogram warmup)
+	{
+		Sample now = new Sample();
+		LatencyHistogram interval = this.latencies.drain();
+		if (counted)
+		{
+			this.summary.add(interval);
+		}
+		if (warmup != null)
+		{
+			interval.add(warmup);
+		}
+		double seconds = (now.time - last.time) / 1e9;
+		System.out.println(String.format("%8.1f %10.0f %10.0f %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f %7d %5d %7d %9s %8d %8d%s",
+			(now.time - this.startTime) / 1e9,
+			(now.emitted - last.emitted) / seconds,
+			(now.delivered - last.delivered) / seconds,
+			micros(interval.getValueAtPercentile(50)),
+			micros(interval.getValueAtPercentile(90)),
+			micros(interval.getValueAtPercentile(99)),
+			micros(interval.getValueAtPercentile(99.9)),
+			micros(interval.getValueAtPercentile(99.99)),
+			micros(interval.getMax()),
+			SASHandler.getQueueDepth(),
+			now.gcCount - last.gcCount,
+			now.gcMillis - last.gcMillis,
+			now.allocated < 0 || !now.keptThreadsOf(last) ? "n/a" : bytes(Math.max(0, now.allocated - last.allocated) / seconds),
+			now.heapUsed >> 20,
+			now.failures - last.failures,
+			!counted ? " (warmup)" : warmup != null ? " (part warmup)" : ""));
+		return now;
+	}
+
+	private void printSummary()
+	{
+		long elapsed = System.nanoTime() - this.startTime;
+		System.out.println();
+		System.out.println(String.format("Emitted %d and delivered %d in %.1fs, with %d slot registrations during the run",
+			this.emitted.get(), this.delivered.get(), elapsed / 1e9, this.registrations.get()));
+		System.out.println(String.format("Delivery latency over %d deliveries after warmup (us): p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  p99.99 %.1f  max %.1f",
+			this.summary.getCount(),
+			micros(this.summary.getValueAtPercentile(50)),
+			micros(this.summary.getValueAtPercentile(90)),
+			micros(this.summary.getValueAtPercentile(99)),
+			micros(this.summary.getValueAtPercentile(99.9)),
+			micros(this.summary.getValueAtPercentile(99.99)),
+			micros(this.summary.getMax())));
+		for (ErrorCode code : ErrorCode.values())
+		{
+			long failures = SASHandler.getFailureCount(code);
+			if (failures > 0)
+			{
+				System.out.println("Failures " + code + ": " + failures);
+			}
+		}
+	}
+
+	private static Thread start(Runnable task, String name)
+	{
+		Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	private static void sleepUntil(long deadline)
+	{
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0)
+		{
+			LockSupport.parkNanos(remaining);
+		}
+	}
+
+	private static int atLeast(String name, int value, int minimum)
+	{
+		if (value < minimum)
+		{
+			throw new IllegalArgumentException("Error: " + name + " must be at least " + minimum);
+		}
+		return value;
+	}
+
+	private static double micros(long nanos)
+	{
+		return nanos / 1000.0;
+	}
+
+	private static String bytes(double perSecond)
+	{
+		if (perSecond >= 1 << 30)
+		{
+			return String.format("%.1fG", perSecond / (1 << 30));
+		}
+		if (perSecond >= 1 << 20)
+		{
+			return String.format("%.1fM", perSecond / (1 << 20));
+		}
+		return String.format("%.1fK", perSecond / (1 << 10));
+	}
+
+	/**
+	 * Emits on a fixed schedule, picking a signal at random for each emission. If it falls behind, it emits back to back until it has caught up
+	 */
+	private final class Emitter implements Runnable
+	{
+		private final long period;
+
+		private long due;
+
+		private Emitter(long first, long period)
+		{
+			this.due = first;
+			this.period = period;
+		}
+
+		@Override
+		public void run()
+		{
+			long end = startTime + durationNanos;
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			while (running && this.due - end < 0)
+			{
+				sleepUntil(this.due);
+				signals.get(random.nextInt(signals.size())).invoke(new Object[] { this.due });
+				emitted.incrementAndGet();
+				this.due += this.period;
+			}
+			// Kept alive until the run ends, so the last report's sample still counts this thread's allocation
+			while (running)
+			{
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+			}
+		}
+	}
+
+	/**
+	 * Registers new slots on random signals at a fixed rate while the load runs, deregistering the oldest once it holds a signal's worth
+	 */
+	private final class Churner implements Runnable
+	{
+		private final long period;
+
+		private Churner(long period)
+		{
+			this.period = Math.max(period, 1);
+		}
+
+		@Override
+		public void run()
+		{
+			Receiver receiver = new Receiver(LoadGenerator.this);
+			ArrayDeque<Slot> churned = new ArrayDeque<Slot>();
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			long due = startTime;
+			while (running)
+			{
+				sleepUntil(due);
+				int index = random.nextInt(signals.size());
+				boolean returning = index >= voidSignals;
+				try {
+					churned.add(createSlot(receiver, signals.get(index).getSignalName(), returning, registrations.getAndIncrement()));
+				} catch (Exception e) {
+					System.err.println("Churn stopped, as a slot failed to register: " + e.getMessage());
+					return;
+				}
+				if (churned.size() > slotsPerSignal)
+				{
+					churned.poll().deregisterSlot();
+					slotCount.decrementAndGet();
+				}
+				// Churn is not measured, so it skips ahead rather than bursting to catch up
+				due = Math.max(due + this.period, System.nanoTime());
+			}
+		}
+	}
+
+	/**
+	 * The target of the reflective slots. The methods are public so they can be found by name
+	 */
+	public static final class Receiver
+	{
+		private final LoadGenerator generator;
+
+		private Receiver(LoadGenerator generator)
+		{
+			this.generator = generator;
+		}
+
+		/**
+		 * The slot for void signals
+		 * @param due	The time the emission was due
+		 */
+		public void receive(Long due)
+		{
+			this.generator.deliver(due);
+		}
+
+		/**
+		 * The slot for returning signals
+		 * @param due	The time the emission was due
+		 * @return	The time the emission was due
+		 */
+		public Long reply(Long due)
+		{
+			this.generator.deliver(due);
+			return due;
+		}
+	}
+
+	/**
+	 * The SlotMethod slots
+	 */
+	private static final class LoadSlotMethod implements SlotMethod
+	{
+		private final LoadGenerator generator;
+
+		private final boolean returning;
+
+		private LoadSlotMethod(LoadGenerator generator, boolean returning)
+		{
+			this.generator = generator;
+			this.returning = returning;
+		}
+
+		@Override
+		public Object invoke(Object[] varargs)
+		{
+			Long due = (Long) varargs[0];
+			this.generator.deliver(due);
+			return this.returning ? due : null;
+		}
+	}
+
+	/**
+	 * The counters read at one report, to subtract the last report's from
+	 */
+	private final class Sample
+	{
+		private final long time = System.nanoTime();
+
+		private final long emitted = LoadGenerator.this.emitted.get();
+
+		private final long delivered = LoadGenerator.this.delivered.get();
+
+		private final long failures;
+
+		private final long gcCount;
+
+		private final long gcMillis;
+
+		private final long allocated;
+
+		private final long heapUsed;
+
+		private long[] threadIds = new long[0];
+
+		private Sample()
+		{
+			long count = 0;
+			long millis = 0;
+			for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			{
+				count += Math.max(gc.getCollectionCount(), 0);
+				millis += Math.max(gc.getCollectionTime(), 0);
+			}
+			this.gcCount = count;
+			this.gcMillis = millis;
+			long failed = 0;
+			for (ErrorCode code : ErrorCode.values())
+			{
+				failed += SASHandler.getFailureCount(code);
+			}
+			this.failures = failed;
+			MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+			this.heapUsed = memory.getHeapMemoryUsage().getUsed();
+			this.allocated = allocatedBytes();
+		}
+
+		/**
+		 * Checks whether every thread alive at an earlier sample is still alive, so the difference in allocated bytes covers the whole interval
+		 *
+		 * @param earlier	The earlier sample
+		 * @return	True if no thread has died between the samples
+		 */
+		private boolean keptThreadsOf(Sample earlier)
+		{
+			for (long id : earlier.threadIds)
+			{
+				if (Arrays.binarySearch(this.threadIds, id) < 0)
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Sums the bytes allocated by the live threads, where the JVM can tell. Allocation by threads that have since died is lost, so the difference
+		 * between samples is only shown when no thread has died (see keptThreadsOf)
+		 * @return	The bytes allocated, or -1 if unknown
+		 */
+		private long allocatedBytes()
+		{
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			if (!(threads instanceof com.sun.management.ThreadMXBean))
+			{
+				return -1;
+			}
+			com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+			if (!allocation.isThreadAllocatedMemorySupported() || !allocation.isThreadAllocatedMemoryEnabled())
+			{
+				return -1;
+			}
+			long[] ids = threads.getAllThreadIds();
+			Arrays.sort(ids);
+			this.threadIds = ids;
+			long total = 0;
+			for (long bytes : allocation.getThreadAllocatedBytes(ids))
+			{
+				if (bytes > 0)
+				{
+					total += bytes;
+				}
+			}
+			return total;
+		}
+	}
+}